@@ -8,6 +8,8 @@ plugins {
 
     id("xyz.jpenilla.run-paper") version "2.3.0"
     id("xyz.jpenilla.resource-factory-bukkit-convention") version "1.1.1"
+
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "uk.mangostudios"
@@ -65,6 +67,34 @@ indra {
     javaVersions().target(21)
 }
 
+// The benchmarks run outside a server, so they need the provided APIs on their classpath
+configurations.named("jmhImplementation") {
+    extendsFrom(configurations.compileOnly.get())
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // e.g. ./gradlew jmh -PjmhIncludes=SearchBenchmark
+    (findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+    resultFormat.set("JSON")
+}
+
+// e.g. ./gradlew loadTest -PloadTest.players=150 -PloadTest.max-p99-ms=100, fails when a threshold is exceeded
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Simulates concurrent players searching a generated world of shops."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("uk.mangostudios.finditemaddon.benchmark.LoadSimulation")
+    args(sequenceOf(
+        "players", "shops", "duration", "think-ms", "updates-per-tick", "seed",
+        "max-p99-ms", "max-tick-ms", "min-throughput", "max-heap-mb"
+    ).mapNotNull { option -> findProperty("loadTest.$option")?.let { "--$option=$it" } }.toList())
+    maxHeapSize = "2g"
+}
+
 tasks {
     assemble {
         dependsOn(shadowJar)
@@ -0,0 +1,63 @@
+package uk.mangostudios.finditemaddon.benchmark;
+
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.mangostudios.finditemaddon.cache.HiddenShopsCache;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+import uk.mangostudios.finditemaddon.util.LocationUtil;
+import uk.mangostudios.finditemaddon.util.LongHashSet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hidden shop check done for every shop in a result before it is shown to a player.
+ * <p>
+ * HiddenShopsCache loads and journals through the plugin's data folder, so this builds the
+ * same owner -> world -> packed position layout directly and runs the cache's lookup over it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HiddenShopsBenchmark {
+
+    @Param({"1000", "10000", "100000", "250000"})
+    public int shopCount;
+
+    private final Map<UUID, Map<String, LongHashSet>> hiddenShops = new HashMap<>();
+    private ShopSnapshot[] shops;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        SyntheticShops dataset = SyntheticShops.generate(shopCount, 42);
+        SplittableRandom random = new SplittableRandom(7);
+        hiddenShops.clear();
+        for (ShopSnapshot shop : dataset.shops) {
+            // Around one in twenty shops is hidden by its owner
+            if (random.nextInt(20) != 0) continue;
+            Location location = shop.location();
+            hiddenShops.computeIfAbsent(shop.owner(), k -> new HashMap<>())
+                    .computeIfAbsent(location.getWorld().getName(), k -> new LongHashSet())
+                    .add(LocationUtil.packBlockPosition(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+        }
+        shops = dataset.shops.toArray(new ShopSnapshot[0]);
+    }
+
+    @Benchmark
+    public boolean isShopHidden() {
+        ShopSnapshot shop = shops[cursor++ % shops.length];
+        return HiddenShopsCache.isShopHidden(hiddenShops, shop.owner(), shop.location());
+    }
+
+}
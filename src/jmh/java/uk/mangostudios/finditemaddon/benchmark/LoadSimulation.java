@@ -0,0 +1,380 @@
+package uk.mangostudios.finditemaddon.benchmark;
+
+import com.ghostchu.quickshop.api.QuickShopAPI;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopManager;
+import com.olziedev.playerwarps.api.warp.Warp;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.cache.HiddenShopsCache;
+import uk.mangostudios.finditemaddon.cache.OwnerBalanceCache;
+import uk.mangostudios.finditemaddon.config.ConfigManager;
+import uk.mangostudios.finditemaddon.external.PlayerWarpsHandler;
+import uk.mangostudios.finditemaddon.external.QuickShopHandler;
+import uk.mangostudios.finditemaddon.gui.impl.LazyPaginatedGui;
+import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+import uk.mangostudios.finditemaddon.index.StreamedResults;
+import uk.mangostudios.finditemaddon.storage.HiddenShopsStorage;
+import uk.mangostudios.finditemaddon.util.LoreTemplate;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A headless load test: simulated players issue a mix of to-buy, to-sell, view-all and manage commands
+ * against a generated world of shops and warps, while a simulated main thread applies stock changes
+ * every tick. Prints throughput, tail latency, main-thread time per tick and peak heap, and exits
+ * with status 1 when a threshold is exceeded, so it can be used as a regression gate.
+ * <p>
+ * Searches and view-all go through the plugin's own {@link QuickShopHandler}, built over stub shops:
+ * index lookups, shared and coalesced searches, their caching and invalidation, the first page collected
+ * during the scan and the per-player filter. Stock changes go through {@link QuickShopHandler#updateShop(Shop)}
+ * on the main thread. Managing shops lists the owner's snapshots the way the manage GUI does. Only the GUIs
+ * need a server, so opening one is modelled as a lore render for each item on the first page.
+ * Economy balances and warps are stubs, and no shops are hidden.
+ * <p>
+ * Options are given as {@code --name=value}, see {@link Options}.
+ */
+public final class LoadSimulation {
+
+    private static final int PAGE_SIZE = LazyPaginatedGui.PAGE_SIZE;
+    private static final int SUGGESTION_LIMIT = 50;
+
+    private final Options options;
+    private final SyntheticShops dataset;
+    private final Map<UUID, Double> balances = new HashMap<>();
+    private final List<Shop> shops;
+    // Shop id -> The shop's current snapshot, as taken by QuickShopHandler. Only changed on the main thread.
+    private final ShopSnapshot[] snapshots;
+    private final QuickShopHandler quickShopHandler;
+    private final LoreTemplate loreTemplate;
+    private final ScheduledExecutorService mainThread = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "Server thread"));
+
+    private final Map<Command, Samples> commandSamples = new EnumMap<>(Command.class);
+    private final Samples tickSamples = new Samples();
+    private final AtomicLong peakHeap = new AtomicLong();
+
+    private LoadSimulation(Options options) throws Exception {
+        this.options = options;
+        this.dataset = SyntheticShops.generate(options.shops, options.seed);
+        SplittableRandom random = new SplittableRandom(options.seed);
+        dataset.owners.forEach(owner -> balances.put(owner, random.nextDouble(0, 100_000)));
+
+        ConfigManager.setupConfig(loadConfig());
+        FindItemAddOn.initConfigProvider();
+        loreTemplate = FindItemAddOn.getConfigProvider().SHOP_GUI_ITEM_LORE_TEMPLATE;
+        new OwnerBalanceCache(owner -> balances.getOrDefault(owner, 0D));
+        new HiddenShopsCache(new HiddenShopsStorage(Files.createTempDirectory("finditem-load-test").toFile(),
+                Logger.getLogger(LoadSimulation.class.getSimpleName())));
+        PlayerWarpsHandler.getWarpIndex().rebuild(dataset.generateWarps(options.seed));
+
+        snapshots = dataset.shops.toArray(new ShopSnapshot[0]);
+        shops = new ArrayList<>(snapshots.length);
+        for (ShopSnapshot snapshot : snapshots) {
+            shops.add(Stubs.of(Shop.class, Map.of(
+                    "getShopId", snapshot.shopId(),
+                    "isLoaded", true,
+                    "isDeleted", false,
+                    "playerAuthorize", true)));
+        }
+        ShopManager shopManager = Stubs.of(ShopManager.class, Map.of("getAllShops", shops));
+        QuickShopAPI api = Stubs.of(QuickShopAPI.class, Map.of("getShopManager", shopManager));
+        quickShopHandler = new QuickShopHandler(api, shop -> snapshots[(int) shop.getShopId()]);
+
+        // Stands in for the index build on startup, one shop at a time through the same path as a created shop
+        mainThread.submit(() -> shops.forEach(quickShopHandler::updateShop)).get();
+        for (Command command : Command.values()) commandSamples.put(command, new Samples());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.out.printf("Simulating %d players over %d shops for %d seconds%n", options.players, options.shops, options.durationSeconds);
+        LoadSimulation simulation = new LoadSimulation(options);
+        simulation.run();
+
+        List<String> failures = simulation.report();
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> System.out.println("FAIL: " + failure));
+            System.exit(1);
+        }
+        System.out.println("PASS");
+    }
+
+    /**
+     * The plugin's default config, without blacklisted worlds as looking worlds up needs a server
+     */
+    private static YamlConfiguration loadConfig() throws IOException {
+        try (Reader reader = new InputStreamReader(
+                Objects.requireNonNull(LoadSimulation.class.getResourceAsStream("/config.yml"), "config.yml"), StandardCharsets.UTF_8)) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(reader);
+            config.set("blacklisted-worlds", List.of());
+            return config;
+        }
+    }
+
+    private void run() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+
+        SplittableRandom tickRandom = new SplittableRandom(options.seed);
+        mainThread.scheduleAtFixedRate(() -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < options.updatesPerTick; i++) this.changeStock(tickRandom);
+            tickSamples.add(System.nanoTime() - start);
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        }, 0, 50, TimeUnit.MILLISECONDS);
+
+        List<Thread> players = new ArrayList<>();
+        for (int i = 0; i < options.players; i++) {
+            players.add(Thread.ofVirtual().name("player-" + i).start(() -> this.play(deadline)));
+        }
+        for (Thread player : players) player.join();
+
+        mainThread.shutdown();
+        mainThread.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * One player, issuing commands with a random think time between them until the deadline
+     */
+    private void play(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID uuid = dataset.owners.get(random.nextInt(dataset.owners.size()));
+        Player player = Stubs.of(Player.class, Map.of("getUniqueId", uuid));
+        Map<Command, Samples> samples = new EnumMap<>(Command.class);
+        for (Command command : Command.values()) samples.put(command, new Samples());
+
+        while (System.nanoTime() < deadline) {
+            Command command = Command.pick(random.nextInt(100));
+            long start = System.nanoTime();
+            StreamedResults results = switch (command) {
+                case BUY_TYPE -> quickShopHandler.searchByType(randomMaterial(random), true, player, PAGE_SIZE);
+                case BUY_NAME -> this.searchByName(randomQuery(random), true, player);
+                case SELL_TYPE -> quickShopHandler.searchByType(randomMaterial(random), false, player, PAGE_SIZE);
+                case VIEW_ALL -> this.viewAll(random.nextBoolean(), player);
+                case MANAGE -> this.manage(uuid);
+            };
+            this.buildPage(results.firstPage());
+            samples.get(command).add(System.nanoTime() - start);
+            // The rest is sorted and filtered in the background while the first page is shown
+            results.allResults().join();
+
+            try {
+                Thread.sleep(random.nextLong(options.thinkMillis / 2, options.thinkMillis * 3 / 2 + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        synchronized (commandSamples) {
+            samples.forEach((command, playerSamples) -> commandSamples.get(command).addAll(playerSamples));
+        }
+    }
+
+    private StreamedResults searchByName(String query, boolean toBuy, Player player) {
+        // Players tab complete before searching
+        quickShopHandler.suggestSearches(query.substring(0, Math.min(2, query.length())), toBuy, SUGGESTION_LIMIT);
+        return quickShopHandler.searchByDisplayName(query, toBuy, player, PAGE_SIZE);
+    }
+
+    private StreamedResults viewAll(boolean toBuy, Player player) {
+        List<ShopItem> shopItems = quickShopHandler.filterForPlayer(quickShopHandler.getAllShopItems(toBuy).join(), player);
+        return StreamedResults.completed(shopItems, PAGE_SIZE);
+    }
+
+    private StreamedResults manage(UUID player) {
+        List<ShopItem> ownShops = new ArrayList<>();
+        for (ShopSnapshot shop : quickShopHandler.getShopSnapshotsFor(player)) {
+            ownShops.add(new ShopItem(shop.price(), shop.remainingStockOrSpace(shop.selling()), shop.owner(),
+                    shop.location(), shop.item(), shop.selling(), shop.itemName(), shop.shopId()));
+        }
+        return StreamedResults.completed(ownShops, PAGE_SIZE);
+    }
+
+    /**
+     * Renders the first page of a result, as the shop GUI does. Locked warps were already filtered out.
+     */
+    private void buildPage(List<ShopItem> firstPage) {
+        for (ShopItem shopItem : firstPage) {
+            Warp warp = PlayerWarpsHandler.getWarpIndex().findNearest(shopItem.shopLocation(), shopItem.shopOwner());
+            loreTemplate.render(placeholder -> switch (placeholder) {
+                case "price" -> String.valueOf(shopItem.shopPrice());
+                case "stock" -> String.valueOf(shopItem.remainingStockOrSpace());
+                case "owner" -> shopItem.shopOwner().toString();
+                case "cost" -> "0.0";
+                case "location" -> "X: " + shopItem.shopLocation().getBlockX()
+                        + ", Y: " + shopItem.shopLocation().getBlockY()
+                        + ", Z: " + shopItem.shopLocation().getBlockZ();
+                case "world" -> shopItem.shopLocation().getWorld().getName();
+                case "warp" -> warp == null ? "No warp found" : "warp";
+                default -> "";
+            });
+        }
+    }
+
+    /**
+     * A shop's stock changes on the main thread, which re-indexes it and drops the cached searches it is in
+     */
+    private void changeStock(SplittableRandom random) {
+        int shopId = random.nextInt(snapshots.length);
+        ShopSnapshot old = snapshots[shopId];
+        int stock = random.nextInt(10) == 0 ? 0 : random.nextInt(1, 2000);
+        snapshots[shopId] = new ShopSnapshot(old.shopId(), old.price(),
+                old.selling() ? stock : 0, old.buying() ? stock : 0, old.owner(), old.location(),
+                old.material(), old.itemName(), old.item(), old.selling(), old.buying(), old.searchable());
+        quickShopHandler.updateShop(shops.get(shopId));
+    }
+
+    private Material randomMaterial(ThreadLocalRandom random) {
+        return dataset.shops.get(random.nextInt(dataset.shops.size())).material();
+    }
+
+    private String randomQuery(ThreadLocalRandom random) {
+        String name = dataset.shops.get(random.nextInt(dataset.shops.size())).itemName();
+        int start = random.nextInt(Math.max(1, name.length() - 3));
+        return name.substring(start, Math.min(name.length(), start + random.nextInt(3, 10))).replace(' ', '_');
+    }
+
+    /**
+     * Prints the results
+     *
+     * @return The thresholds that were exceeded
+     */
+    private List<String> report() {
+        long total = 0;
+        Samples all = new Samples();
+        System.out.printf("%-10s %8s %10s %10s %10s%n", "command", "count", "p50 ms", "p99 ms", "max ms");
+        for (Map.Entry<Command, Samples> entry : commandSamples.entrySet()) {
+            Samples samples = entry.getValue();
+            total += samples.size();
+            all.addAll(samples);
+            System.out.printf("%-10s %8d %10.2f %10.2f %10.2f%n", entry.getKey().name().toLowerCase(), samples.size(),
+                    samples.millisAt(0.5), samples.millisAt(0.99), samples.millisAt(1));
+        }
+        double throughput = (double) total / options.durationSeconds;
+        double p99 = all.millisAt(0.99);
+        double tickP99 = tickSamples.millisAt(0.99);
+        double peakHeapMb = peakHeap.get() / (1024.0 * 1024.0);
+        System.out.printf("throughput: %.1f commands/s, p99: %.2f ms%n", throughput, p99);
+        System.out.printf("main thread per tick: p50 %.3f ms, p99 %.3f ms, max %.3f ms over %d ticks%n",
+                tickSamples.millisAt(0.5), tickP99, tickSamples.millisAt(1), tickSamples.size());
+        System.out.printf("peak heap: %.1f MB%n", peakHeapMb);
+
+        List<String> failures = new ArrayList<>();
+        if (p99 > options.maxP99Millis) failures.add(String.format("p99 %.2f ms > %.2f ms", p99, options.maxP99Millis));
+        if (tickP99 > options.maxTickMillis) failures.add(String.format("tick p99 %.3f ms > %.3f ms", tickP99, options.maxTickMillis));
+        if (throughput < options.minThroughput) failures.add(String.format("throughput %.1f/s < %.1f/s", throughput, options.minThroughput));
+        if (options.maxHeapMb > 0 && peakHeapMb > options.maxHeapMb) failures.add(String.format("peak heap %.1f MB > %d MB", peakHeapMb, options.maxHeapMb));
+        return failures;
+    }
+
+    private enum Command {
+        BUY_TYPE(35), BUY_NAME(20), SELL_TYPE(20), VIEW_ALL(15), MANAGE(10);
+
+        // Out of 100
+        private final int weight;
+
+        Command(int weight) {
+            this.weight = weight;
+        }
+
+        private static Command pick(int roll) {
+            for (Command command : values()) {
+                if (roll < command.weight) return command;
+                roll -= command.weight;
+            }
+            return BUY_TYPE;
+        }
+    }
+
+    /**
+     * Recorded durations in nanoseconds, kept whole so percentiles are exact
+     */
+    private static final class Samples {
+
+        private long[] values = new long[256];
+        private int size;
+
+        synchronized void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        synchronized void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) this.add(other.values[i]);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized double millisAt(double quantile) {
+            if (size == 0) return 0;
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(size - 1, Math.max(0, Math.ceil(quantile * size) - 1));
+            return sorted[index] / 1_000_000.0;
+        }
+    }
+
+    /**
+     * @param players         Simulated players ({@code --players}, default 150)
+     * @param shops           Generated shops ({@code --shops}, default 50000)
+     * @param durationSeconds How long to run ({@code --duration}, default 60)
+     * @param thinkMillis     Average pause between a player's commands ({@code --think-ms}, default 2000)
+     * @param updatesPerTick  Stock changes applied per tick ({@code --updates-per-tick}, default 20)
+     * @param seed            Seed for the generated world ({@code --seed}, default 42)
+     * @param maxP99Millis    Fails above this command p99 ({@code --max-p99-ms}, default 250)
+     * @param maxTickMillis   Fails above this main-thread p99 per tick ({@code --max-tick-ms}, default 5)
+     * @param minThroughput   Fails below this many commands per second ({@code --min-throughput}, default 0)
+     * @param maxHeapMb       Fails above this peak heap, 0 to ignore ({@code --max-heap-mb}, default 0)
+     */
+    private record Options(int players, int shops, int durationSeconds, long thinkMillis, int updatesPerTick, long seed,
+                           double maxP99Millis, double maxTickMillis, double minThroughput, int maxHeapMb) {
+
+        private static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+            return new Options(
+                    Integer.parseInt(values.getOrDefault("players", "150")),
+                    Integer.parseInt(values.getOrDefault("shops", "50000")),
+                    Integer.parseInt(values.getOrDefault("duration", "60")),
+                    Long.parseLong(values.getOrDefault("think-ms", "2000")),
+                    Integer.parseInt(values.getOrDefault("updates-per-tick", "20")),
+                    Long.parseLong(values.getOrDefault("seed", "42")),
+                    Double.parseDouble(values.getOrDefault("max-p99-ms", "250")),
+                    Double.parseDouble(values.getOrDefault("max-tick-ms", "5")),
+                    Double.parseDouble(values.getOrDefault("min-throughput", "0")),
+                    Integer.parseInt(values.getOrDefault("max-heap-mb", "0"))
+            );
+        }
+    }
+
+}
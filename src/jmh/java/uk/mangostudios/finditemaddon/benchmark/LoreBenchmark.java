@@ -0,0 +1,64 @@
+package uk.mangostudios.finditemaddon.benchmark;
+
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.mangostudios.finditemaddon.util.LoreTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the lore of one shop GUI item from the default config template, which a GUI page does 45 times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoreBenchmark {
+
+    // The default shop-gui-item-lore from config.yml
+    static final List<String> SHOP_GUI_ITEM_LORE = List.of(
+            "",
+            "<#96eeff>▎ <white>Price: <#fbf679>$<price>",
+            "",
+            "<#96eeff>▎ <white>Stock/Space: <gray><stock>",
+            "<#96eeff>▎ <white>Owner: <gray><owner>",
+            "<#96eeff>▎ <white>Location: <gray><location>",
+            "<#96eeff>▎ <white>World: <gray><world>",
+            "<#96eeff>▎ <white>Warp: <gray><warp>",
+            "",
+            "<white>⏩ <#96eeff>Left click<white> to teleport"
+    );
+
+    private LoreTemplate template;
+
+    @Setup
+    public void setup() {
+        template = compileTemplate();
+    }
+
+    @Benchmark
+    public List<Component> renderLore() {
+        return template.render(placeholder -> switch (placeholder) {
+            case "price" -> "1250.5";
+            case "stock" -> "320";
+            case "owner" -> "lukemango";
+            case "cost" -> "0.0";
+            case "location" -> "X: 1024, Y: 64, Z: -2048";
+            case "world" -> "world";
+            case "warp" -> "mango_mall";
+            default -> "";
+        });
+    }
+
+    @Benchmark
+    public LoreTemplate compileTemplate() {
+        return LoreTemplate.compile(SHOP_GUI_ITEM_LORE, "price", "stock", "owner", "cost", "location", "world", "warp");
+    }
+
+}
@@ -0,0 +1,95 @@
+package uk.mangostudios.finditemaddon.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.mangostudios.finditemaddon.external.QuickShopHandler;
+import uk.mangostudios.finditemaddon.gui.impl.LazyPaginatedGui;
+import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+import uk.mangostudios.finditemaddon.index.ShopNameIndex;
+import uk.mangostudios.finditemaddon.index.ShopResults;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+import uk.mangostudios.finditemaddon.index.ShopTypeIndex;
+import uk.mangostudios.finditemaddon.index.TopKCollector;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The uncached search path: index lookup, scan into shop items and sorting, for searches by
+ * item type and by display name, plus the sort and first page selection on their own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"1000", "10000", "100000", "250000"})
+    public int shopCount;
+
+    private ShopTypeIndex typeIndex;
+    private ShopNameIndex nameIndex;
+    private List<ShopItem> popularItems;
+
+    @Setup
+    public void setup() {
+        SyntheticShops dataset = SyntheticShops.generate(shopCount, 42);
+        typeIndex = new ShopTypeIndex();
+        typeIndex.rebuild(dataset.shops);
+        nameIndex = new ShopNameIndex();
+        nameIndex.rebuild(dataset.shops);
+        popularItems = scan(typeIndex.getShops(SyntheticShops.POPULAR_MATERIAL, true));
+    }
+
+    @Benchmark
+    public List<ShopItem> findItemBasedOnType() {
+        List<ShopItem> shopItems = scan(typeIndex.getShops(SyntheticShops.POPULAR_MATERIAL, true));
+        return new ShopResults(shopItems).view(2);
+    }
+
+    @Benchmark
+    public List<ShopItem> findItemBasedOnDisplayName(NameQuery query) {
+        List<ShopItem> shopItems = scan(nameIndex.search(query.query));
+        return new ShopResults(shopItems).view(2);
+    }
+
+    @Benchmark
+    public ShopResults sortShops() {
+        return new ShopResults(popularItems);
+    }
+
+    @Benchmark
+    public List<ShopItem> firstPage() {
+        TopKCollector<ShopItem> firstPage = new TopKCollector<>(
+                Objects.requireNonNull(ShopResults.comparator(2)), LazyPaginatedGui.PAGE_SIZE);
+        for (ShopItem shopItem : popularItems) {
+            if (firstPage.wouldAccept(shopItem)) firstPage.add(shopItem);
+        }
+        return firstPage.toSortedList();
+    }
+
+    /**
+     * Scans the way a search to buy does, with no blacklisted worlds and unloaded shops included
+     */
+    private static List<ShopItem> scan(Collection<ShopSnapshot> candidates) {
+        return QuickShopHandler.scanShops(candidates, true, List.of(), null, null);
+    }
+
+    /**
+     * A long query narrowed down by the trigram index, and one too short to produce a trigram
+     */
+    @State(Scope.Benchmark)
+    public static class NameQuery {
+
+        @Param({"diamond", "sw"})
+        public String query;
+    }
+
+}
@@ -0,0 +1,38 @@
+package uk.mangostudios.finditemaddon.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Builds stub implementations of server and plugin API interfaces, so the benchmarks
+ * can run without a server or any of the plugins we hook into.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * Creates a stub that answers the given methods with fixed values and fails on anything else
+     *
+     * @param type    The interface to implement
+     * @param returns Method name -> value returned by that method
+     * @return The stub
+     */
+    static <T> T of(Class<T> type, Map<String, Object> returns) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    // Identity semantics, so stubs can be used as map keys
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> type.getSimpleName() + returns;
+                    default -> {
+                        if (!returns.containsKey(method.getName())) {
+                            throw new UnsupportedOperationException(type.getSimpleName() + "#" + method.getName() + " is not stubbed");
+                        }
+                        yield returns.get(method.getName());
+                    }
+                }));
+    }
+
+}
@@ -0,0 +1,141 @@
+package uk.mangostudios.finditemaddon.benchmark;
+
+import com.olziedev.playerwarps.api.warp.Warp;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * A reproducible world of shops for the benchmarks. Item popularity is skewed towards the first
+ * few materials, as it is on a real server, so the common searches match a large share of shops.
+ */
+final class SyntheticShops {
+
+    static final Material POPULAR_MATERIAL = Material.DIAMOND;
+    static final int WORLD_RADIUS = 10_000;
+
+    private static final List<Material> POPULAR = List.of(
+            Material.DIAMOND, Material.IRON_INGOT, Material.OAK_LOG, Material.COBBLESTONE,
+            Material.DIAMOND_SWORD, Material.NETHERITE_INGOT, Material.GOLDEN_APPLE, Material.ELYTRA);
+
+    final List<World> worlds;
+    final List<UUID> owners;
+    final List<ShopSnapshot> shops;
+
+    private SyntheticShops(List<World> worlds, List<UUID> owners, List<ShopSnapshot> shops) {
+        this.worlds = worlds;
+        this.owners = owners;
+        this.shops = shops;
+    }
+
+    /**
+     * Generates a dataset. The same count and seed always give the same shops.
+     *
+     * @param shopCount The number of shops
+     * @param seed      The random seed
+     * @return The dataset
+     */
+    static SyntheticShops generate(int shopCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<World> worlds = List.of(world("world"), world("world_nether"), world("shops"));
+
+        // Roughly one owner per 20 shops, like a server with a shopping district
+        List<UUID> owners = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, shopCount / 20); i++) {
+            owners.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+
+        List<Material> materials = new ArrayList<>(POPULAR);
+        Arrays.stream(Material.values())
+                .filter(material -> !material.name().startsWith("LEGACY_") && !material.name().endsWith("AIR") && !POPULAR.contains(material))
+                .limit(400)
+                .forEach(materials::add);
+
+        List<ShopSnapshot> shops = new ArrayList<>(shopCount);
+        for (int i = 0; i < shopCount; i++) {
+            // Cubing the uniform draw puts most shops on the first materials
+            Material material = materials.get((int) (materials.size() * Math.pow(random.nextDouble(), 3)));
+            String itemName = random.nextInt(10) == 0 ? "enchanted " + nameOf(material) : nameOf(material);
+            boolean selling = random.nextInt(10) < 7;
+            shops.add(new ShopSnapshot(
+                    i,
+                    Math.round(random.nextDouble(0.5, 5000) * 100) / 100.0,
+                    selling ? stockOrSpace(random) : 0,
+                    selling ? 0 : stockOrSpace(random),
+                    owners.get(random.nextInt(owners.size())),
+                    randomLocation(random, worlds),
+                    material,
+                    itemName,
+                    // ItemStacks need a running server, nothing on the benchmarked paths reads the item
+                    null,
+                    selling,
+                    !selling,
+                    true
+            ));
+        }
+        return new SyntheticShops(worlds, owners, shops);
+    }
+
+    /**
+     * Generates warps near the shops, roughly one per 10 shops and a short walk from the shop it was made for
+     *
+     * @param seed The random seed
+     * @return The warps
+     */
+    List<Warp> generateWarps(long seed) throws ReflectiveOperationException {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Warp> warps = new ArrayList<>();
+        for (ShopSnapshot shop : shops) {
+            if (random.nextInt(10) != 0) continue;
+            Location location = shop.location();
+            warps.add(warp(shop.owner(), location.getWorld().getName(),
+                    location.getX() + random.nextInt(-50, 50), location.getY(), location.getZ() + random.nextInt(-50, 50),
+                    random.nextInt(20) == 0));
+        }
+        return warps;
+    }
+
+    static Location randomLocation(SplittableRandom random, List<World> worlds) {
+        return new Location(worlds.get(random.nextInt(worlds.size())),
+                random.nextInt(-WORLD_RADIUS, WORLD_RADIUS), random.nextInt(-64, 320), random.nextInt(-WORLD_RADIUS, WORLD_RADIUS));
+    }
+
+    static World world(String name) {
+        return Stubs.of(World.class, Map.of("getName", name));
+    }
+
+    /**
+     * Stubs a warp. The location and player types are looked up from the API rather than named,
+     * they are only ever reached through the warp.
+     */
+    static Warp warp(UUID owner, String world, double x, double y, double z, boolean locked) throws ReflectiveOperationException {
+        Object location = Stubs.of(Warp.class.getMethod("getWarpLocation").getReturnType(),
+                Map.of("getWorld", world, "getX", x, "getY", y, "getZ", z));
+        Object player = Stubs.of(Warp.class.getMethod("getWarpPlayer").getReturnType(), Map.of("getUUID", owner));
+        return Stubs.of(Warp.class, Map.of("getWarpLocation", location, "getWarpPlayer", player, "isWarpLocked", locked));
+    }
+
+    /**
+     * Approximates the normalised display name of a plain item, e.g. "diamond sword"
+     */
+    private static String nameOf(Material material) {
+        return material.name().toLowerCase().replace('_', ' ');
+    }
+
+    private static int stockOrSpace(SplittableRandom random) {
+        return switch (random.nextInt(20)) {
+            case 0 -> 0; // Out of stock or full
+            case 1 -> -1; // Unlimited
+            default -> random.nextInt(1, 2000);
+        };
+    }
+
+}
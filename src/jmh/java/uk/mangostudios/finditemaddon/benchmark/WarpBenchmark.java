@@ -0,0 +1,47 @@
+package uk.mangostudios.finditemaddon.benchmark;
+
+import com.olziedev.playerwarps.api.warp.Warp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+import uk.mangostudios.finditemaddon.index.WarpIndex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The nearest warp lookup done for every shop shown in a GUI, with roughly one warp
+ * per ten shops placed near the shops they were made for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WarpBenchmark {
+
+    @Param({"1000", "10000", "100000", "250000"})
+    public int shopCount;
+
+    private WarpIndex warpIndex;
+    private ShopSnapshot[] shops;
+    private int cursor;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        SyntheticShops dataset = SyntheticShops.generate(shopCount, 42);
+        warpIndex = new WarpIndex();
+        warpIndex.rebuild(dataset.generateWarps(7));
+        shops = dataset.shops.toArray(new ShopSnapshot[0]);
+    }
+
+    @Benchmark
+    public Warp findNearestWarp() {
+        ShopSnapshot shop = shops[cursor++ % shops.length];
+        return warpIndex.findNearest(shop.location(), shop.owner());
+    }
+
+}
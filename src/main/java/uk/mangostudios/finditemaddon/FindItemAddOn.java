@@ -18,11 +18,14 @@
  */
 package uk.mangostudios.finditemaddon;
 
+import com.ghostchu.quickshop.api.shop.Shop;
 import net.milkbowl.vault.economy.Economy;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
 import uk.mangostudios.finditemaddon.cache.HiddenShopsCache;
+import uk.mangostudios.finditemaddon.cache.OwnerBalanceCache;
+import uk.mangostudios.finditemaddon.cache.SafeLocationCache;
 import uk.mangostudios.finditemaddon.commands.CmdExecutorHandler;
 import uk.mangostudios.finditemaddon.commands.CommandManager;
 import uk.mangostudios.finditemaddon.commands.impl.BuyCommand;
@@ -31,6 +34,7 @@ import uk.mangostudios.finditemaddon.commands.impl.HideAllShopsCommand;
 import uk.mangostudios.finditemaddon.commands.impl.HideShopCommands;
 import uk.mangostudios.finditemaddon.commands.impl.ReloadCommand;
 import uk.mangostudios.finditemaddon.commands.impl.SellCommand;
+import uk.mangostudios.finditemaddon.commands.impl.StatsCommand;
 import uk.mangostudios.finditemaddon.commands.impl.ViewAllCommand;
 import uk.mangostudios.finditemaddon.config.ConfigManager;
 import uk.mangostudios.finditemaddon.config.ConfigProvider;
@@ -38,6 +42,19 @@ import uk.mangostudios.finditemaddon.external.PlayerWarpsHandler;
 import uk.mangostudios.finditemaddon.external.QuickShopHandler;
 import uk.mangostudios.finditemaddon.listener.HeadDatabaseApiListener;
 import uk.mangostudios.finditemaddon.listener.PlayerWarpEventListeners;
+import uk.mangostudios.finditemaddon.listener.QuickShopEventListeners;
+import uk.mangostudios.finditemaddon.listener.ShopInventoryListeners;
+import uk.mangostudios.finditemaddon.listener.ShopSurroundingsListeners;
+import uk.mangostudios.finditemaddon.metrics.SearchMetrics;
+import uk.mangostudios.finditemaddon.network.FederatedShopIndex;
+import uk.mangostudios.finditemaddon.network.FileShopIndexTransport;
+import uk.mangostudios.finditemaddon.network.InProcessShopIndexTransport;
+import uk.mangostudios.finditemaddon.network.ShopIndexPublisher;
+import uk.mangostudios.finditemaddon.network.ShopIndexTransport;
+import uk.mangostudios.finditemaddon.util.BlockSafety;
+import uk.mangostudios.finditemaddon.util.SearchExecutor;
+
+import java.nio.file.Path;
 
 public final class FindItemAddOn extends JavaPlugin {
 
@@ -50,6 +67,7 @@ public final class FindItemAddOn extends JavaPlugin {
     private CommandManager commandManager;
 
     private HiddenShopsCache hiddenShopsCache;
+    private ShopIndexTransport shopIndexTransport;
 
     private Economy econ;
 
@@ -67,6 +85,7 @@ public final class FindItemAddOn extends JavaPlugin {
 
         this.initCommands();
         this.initVaultEconomy();
+        new OwnerBalanceCache(econ);
 
         // Init cache
         hiddenShopsCache = new HiddenShopsCache(plugin);
@@ -78,15 +97,64 @@ public final class FindItemAddOn extends JavaPlugin {
     @Override
     public void onDisable() {
         hiddenShopsCache.shutdown();
+        if (shopIndexTransport != null) shopIndexTransport.close();
+        SearchExecutor.shutdown();
     }
 
     private void runPluginStartupTasks() {
         quickShopApi = new QuickShopHandler();
+        BlockSafety.rebuild(quickShopApi.getShopSignMaterial());
+        SafeLocationCache safeLocationCache = new SafeLocationCache();
+        quickShopApi.buildIndex().thenRun(() -> {
+            safeLocationCache.rebuild(quickShopApi.getAllShops().stream().map(Shop::getLocation).toList());
+            // Only once indexed, so other servers aren't sent an empty shop list
+            this.initNetwork();
+        });
+        SearchMetrics.getInstance().scheduleDump(FindItemAddOn.getConfigProvider().METRICS_DUMP_SECONDS);
+        Bukkit.getScheduler().runTaskTimer(this, quickShopApi::refreshChangedStock, 1L, 1L);
+        Bukkit.getScheduler().runTaskTimer(this, safeLocationCache::refreshStale, 1L, 1L);
+        long snapshotRefreshTicks = FindItemAddOn.getConfigProvider().SNAPSHOT_REFRESH_SECONDS * 20L;
+        if (snapshotRefreshTicks > 0) {
+            Bukkit.getScheduler().runTaskTimer(this, quickShopApi::refreshSnapshots, snapshotRefreshTicks, snapshotRefreshTicks);
+            // Re-reads warps that moved or changed owner, which PlayerWarps doesn't report to us
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, PlayerWarpsHandler::updateAllWarpsFromAPI, snapshotRefreshTicks, snapshotRefreshTicks);
+        }
         PlayerWarpsHandler.setup();
 
         this.registerListeners();
     }
 
+    /**
+     * Starts publishing this server's shops to the other servers of the network, and merging theirs, if enabled
+     */
+    private void initNetwork() {
+        ConfigProvider config = FindItemAddOn.getConfigProvider();
+        if (!config.NETWORK_ENABLED) return;
+
+        String serverName = config.NETWORK_SERVER_NAME;
+        long publishMillis = Math.max(1, config.NETWORK_PUBLISH_INTERVAL_SECONDS) * 1000L;
+        switch (config.NETWORK_TRANSPORT.toLowerCase()) {
+            case "file" -> shopIndexTransport = new FileShopIndexTransport(
+                    Path.of(config.NETWORK_FILE_DIRECTORY), serverName, publishMillis, this.getLogger());
+            case "in-process" -> shopIndexTransport = new InProcessShopIndexTransport("finditem", serverName);
+            default -> {
+                this.getLogger().warning("Unknown network transport " + config.NETWORK_TRANSPORT + ", not sharing shops with other servers");
+                return;
+            }
+        }
+
+        FederatedShopIndex federatedIndex = new FederatedShopIndex(serverName);
+        shopIndexTransport.subscribe(federatedIndex::apply);
+        ShopIndexPublisher publisher = new ShopIndexPublisher(shopIndexTransport, serverName, quickShopApi::getShopSnapshots,
+                Math.max(1, config.NETWORK_FULL_SNAPSHOT_INTERVAL_SECONDS) * 1000L);
+        long timeoutMillis = Math.max(1, config.NETWORK_SERVER_TIMEOUT_SECONDS) * 1000L;
+        Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+            publisher.publish();
+            federatedIndex.expire(timeoutMillis);
+        }, 0L, publishMillis / 50);
+        this.getLogger().info("Sharing shops with other servers as " + serverName);
+    }
+
     private void initCommands() {
         cmdExecutorHandler = new CmdExecutorHandler();
         commandManager = new CommandManager();
@@ -95,6 +163,7 @@ public final class FindItemAddOn extends JavaPlugin {
                 new SellCommand(cmdExecutorHandler),
                 new ViewAllCommand(),
                 new ReloadCommand(cmdExecutorHandler),
+                new StatsCommand(),
                 new HideShopCommands(),
                 new HideAllShopsCommand(),
                 new HandCommand(cmdExecutorHandler)
@@ -105,6 +174,11 @@ public final class FindItemAddOn extends JavaPlugin {
         // Register PlayerWarpsPlugin listeners
         this.getServer().getPluginManager().registerEvents(new PlayerWarpEventListeners(), this);
 
+        // Register QuickShop and inventory listeners to keep the shop index up to date
+        this.getServer().getPluginManager().registerEvents(new QuickShopEventListeners(), this);
+        this.getServer().getPluginManager().registerEvents(new ShopInventoryListeners(), this);
+        this.getServer().getPluginManager().registerEvents(new ShopSurroundingsListeners(), this);
+
         // Register HeadDatabaseAPI listener
         this.getServer().getPluginManager().registerEvents(new HeadDatabaseApiListener(), this);
     }
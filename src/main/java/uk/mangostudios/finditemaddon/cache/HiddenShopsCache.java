@@ -9,8 +9,12 @@ import uk.mangostudios.finditemaddon.external.QuickShopHandler;
 import uk.mangostudios.finditemaddon.storage.HiddenShopsStorage;
 import uk.mangostudios.finditemaddon.storage.impl.FinePosition;
 import uk.mangostudios.finditemaddon.util.Colourify;
+import uk.mangostudios.finditemaddon.util.LocationUtil;
+import uk.mangostudios.finditemaddon.util.LongHashSet;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -20,84 +24,185 @@ public class HiddenShopsCache {
 
     private static HiddenShopsCache instance;
 
-    private final Map<UUID, List<FinePosition>> hiddenShops = new ConcurrentHashMap<>();
+    // Owner -> World name -> Packed block positions. The inner maps and sets are copy-on-write,
+    // so lookups from search threads never see a set while it is being modified.
+    private final Map<UUID, Map<String, LongHashSet>> hiddenShops = new ConcurrentHashMap<>();
     private final HiddenShopsStorage hiddenShopsStorage;
 
     public HiddenShopsCache(FindItemAddOn plugin) {
-        this.hiddenShopsStorage = new HiddenShopsStorage(plugin);
-        hiddenShopsStorage.load().thenAccept(hiddenShops::putAll);
+        this(new HiddenShopsStorage(plugin));
+    }
+
+    /**
+     * @param hiddenShopsStorage Where hidden shops are loaded from and journalled to
+     */
+    public HiddenShopsCache(HiddenShopsStorage hiddenShopsStorage) {
+        this.hiddenShopsStorage = hiddenShopsStorage;
+        hiddenShopsStorage.load().thenAccept(loaded -> {
+            loaded.forEach(this::setAllHidden);
+            // Only start compacting once the loaded state is in memory, or the snapshot would be overwritten with nothing
+            hiddenShopsStorage.start(this::toFinePositions);
+        });
         instance = this;
     }
 
     public void shutdown() {
-        hiddenShopsStorage.saveAll(hiddenShops);
+        hiddenShopsStorage.shutdown();
     }
 
     public void hideAllShops(Player player) {
-        QuickShopHandler.getInstance().getAllShopsFor(player).forEach(shop -> {
-            if (!(shop.getOwner().getUniqueId() == player.getUniqueId())) return;
-            hiddenShops.computeIfAbsent(player.getUniqueId(),
-                            k -> new ArrayList<>())
-                    .add(new FinePosition(
-                                    shop.getLocation().getX(),
-                                    shop.getLocation().getY(),
-                                    shop.getLocation().getZ(),
-                                    shop.getLocation().getWorld().getName()
-                            )
-                    );
-        });
+        UUID owner = player.getUniqueId();
+        List<FinePosition> positions = new ArrayList<>();
+        for (Shop shop : QuickShopHandler.getInstance().getAllShopsFor(player)) {
+            if (!owner.equals(shop.getOwner().getUniqueId())) continue;
+            Location location = shop.getLocation();
+            positions.add(new FinePosition(location.getBlockX(), location.getBlockY(), location.getBlockZ(), location.getWorld().getName()));
+        }
+        this.setAllHidden(owner, positions);
+        hiddenShopsStorage.journalHideAll(owner, positions);
         player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().HIDDEN_ALL_SHOPS_MSG));
     }
 
     public void unhideAllShops(Player player) {
         hiddenShops.remove(player.getUniqueId());
+        hiddenShopsStorage.journalUnhideAll(player.getUniqueId());
         player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().UNHIDDEN_ALL_SHOPS_MSG));
     }
 
     public void hideShop(Player player, @Nullable Location shopLocation) {
-        if (shopLocation == null) shopLocation = player.getTargetBlock(null, 5).getLocation();
-        FinePosition finePosition = new FinePosition(shopLocation.getX(), shopLocation.getY(), shopLocation.getZ(), shopLocation.getWorld().getName());
-        Shop shop = QuickShopHandler.getInstance().findShopAtLocation(shopLocation);
+        Shop shop = this.findOwnShop(player, shopLocation);
+        if (shop == null) return;
 
-        if (shop == null) {
-            player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NOT_LOOKING_AT_SHOP_MSG));
-            return;
-        }
-
-        if (!(shop.getOwner().getUniqueId() == player.getUniqueId())) {
-            player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NOT_YOUR_SHOP_MSG));
-            return;
-        }
-
-        hiddenShops.computeIfAbsent(player.getUniqueId(), k -> new ArrayList<>()).add(finePosition);
+        this.setHiddenAndJournal(player.getUniqueId(), shop.getLocation(), true);
         player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().HIDDEN_SHOP_MSG));
     }
 
     public void unhideShop(Player player, @Nullable Location shopLocation) {
+        Shop shop = this.findOwnShop(player, shopLocation);
+        if (shop == null) return;
+
+        this.setHiddenAndJournal(player.getUniqueId(), shop.getLocation(), false);
+        player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().UNHIDDEN_SHOP_MSG));
+    }
+
+    public boolean isShopHidden(Player player, Location shopLocation) {
+        return isShopHidden(player.getUniqueId(), shopLocation);
+    }
+
+    /**
+     * Checks whether a shop has been hidden by its owner, without allocating
+     *
+     * @param shopOwner    The owner of the shop
+     * @param shopLocation The location of the shop
+     * @return If the shop is hidden
+     */
+    public boolean isShopHidden(UUID shopOwner, Location shopLocation) {
+        return isShopHidden(hiddenShops, shopOwner, shopLocation);
+    }
+
+    /**
+     * The lookup behind {@link #isShopHidden(UUID, Location)}, over a given owner -> world name -> packed positions map,
+     * so it can be benchmarked without the plugin's storage
+     *
+     * @param hiddenShops  The hidden shops
+     * @param shopOwner    The owner of the shop
+     * @param shopLocation The location of the shop
+     * @return If the shop is hidden
+     */
+    public static boolean isShopHidden(Map<UUID, Map<String, LongHashSet>> hiddenShops, UUID shopOwner, Location shopLocation) {
+        Map<String, LongHashSet> worlds = hiddenShops.get(shopOwner);
+        if (worlds == null || shopLocation.getWorld() == null) return false;
+        LongHashSet positions = worlds.get(shopLocation.getWorld().getName());
+        return positions != null && positions.contains(
+                LocationUtil.packBlockPosition(shopLocation.getBlockX(), shopLocation.getBlockY(), shopLocation.getBlockZ()));
+    }
+
+    /**
+     * Finds the shop the player is looking at (or at the given location), messaging them if it isn't theirs
+     */
+    private @Nullable Shop findOwnShop(Player player, @Nullable Location shopLocation) {
         if (shopLocation == null) shopLocation = player.getTargetBlock(null, 5).getLocation();
-        FinePosition finePosition = new FinePosition(shopLocation.getX(), shopLocation.getY(), shopLocation.getZ(), shopLocation.getWorld().getName());
         Shop shop = QuickShopHandler.getInstance().findShopAtLocation(shopLocation);
 
         if (shop == null) {
             player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NOT_LOOKING_AT_SHOP_MSG));
-            return;
+            return null;
         }
 
-        if (!(shop.getOwner().getUniqueId() == player.getUniqueId())) {
+        if (!player.getUniqueId().equals(shop.getOwner().getUniqueId())) {
             player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NOT_YOUR_SHOP_MSG));
-            return;
+            return null;
         }
-
-        hiddenShops.get(player.getUniqueId()).remove(finePosition);
-        player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().UNHIDDEN_SHOP_MSG));
+        return shop;
     }
 
-    public boolean isShopHidden(Player player, Location shopLocation) {
-        if (!hiddenShops.containsKey(player.getUniqueId())) return false;
-        for (FinePosition finePosition : hiddenShops.get(player.getUniqueId())) {
-            return finePosition.equals(new FinePosition(shopLocation.getX(), shopLocation.getY(), shopLocation.getZ(), shopLocation.getWorld().getName()));
+    private void setHiddenAndJournal(UUID owner, Location location, boolean hidden) {
+        String world = location.getWorld().getName();
+        this.setHidden(owner, world, location.getBlockX(), location.getBlockY(), location.getBlockZ(), hidden);
+        if (hidden) {
+            hiddenShopsStorage.journalHide(owner, world, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        } else {
+            hiddenShopsStorage.journalUnhide(owner, world, location.getBlockX(), location.getBlockY(), location.getBlockZ());
         }
-        return false;
+    }
+
+    private void setHidden(UUID owner, String world, int x, int y, int z, boolean hidden) {
+        long packed = LocationUtil.packBlockPosition(x, y, z);
+        hiddenShops.compute(owner, (key, worlds) -> {
+            Map<String, LongHashSet> updatedWorlds = worlds == null ? new HashMap<>() : new HashMap<>(worlds);
+            LongHashSet positions = updatedWorlds.get(world);
+            LongHashSet updatedPositions = new LongHashSet();
+            if (positions != null) {
+                positions.forEach(position -> {
+                    if (position != packed) updatedPositions.add(position);
+                });
+            }
+            if (hidden) updatedPositions.add(packed);
+
+            if (updatedPositions.isEmpty()) {
+                updatedWorlds.remove(world);
+            } else {
+                updatedWorlds.put(world, updatedPositions);
+            }
+            return updatedWorlds.isEmpty() ? null : updatedWorlds;
+        });
+    }
+
+    /**
+     * Hides many shops of one owner at once, copying each of their affected sets only once
+     */
+    private void setAllHidden(UUID owner, Collection<FinePosition> positions) {
+        if (positions.isEmpty()) return;
+        hiddenShops.compute(owner, (key, worlds) -> {
+            Map<String, LongHashSet> updatedWorlds = worlds == null ? new HashMap<>() : new HashMap<>(worlds);
+            // The sets already copied for this update, which are not published yet and can be modified
+            Map<String, LongHashSet> copiedWorlds = new HashMap<>();
+            for (FinePosition position : positions) {
+                LongHashSet updatedPositions = copiedWorlds.computeIfAbsent(position.world(), world -> {
+                    LongHashSet existing = updatedWorlds.get(world);
+                    LongHashSet copy = existing == null ? new LongHashSet() : new LongHashSet(existing);
+                    updatedWorlds.put(world, copy);
+                    return copy;
+                });
+                updatedPositions.add(LocationUtil.packBlockPosition(position.blockX(), position.blockY(), position.blockZ()));
+            }
+            return updatedWorlds;
+        });
+    }
+
+    private Map<UUID, List<FinePosition>> toFinePositions() {
+        Map<UUID, List<FinePosition>> positions = new HashMap<>();
+        hiddenShops.forEach((owner, worlds) -> {
+            List<FinePosition> ownerPositions = new ArrayList<>();
+            worlds.forEach((world, packedPositions) -> packedPositions.forEach(packed -> ownerPositions.add(new FinePosition(
+                    LocationUtil.unpackBlockX(packed),
+                    LocationUtil.unpackBlockY(packed),
+                    LocationUtil.unpackBlockZ(packed),
+                    world
+            ))));
+            positions.put(owner, ownerPositions);
+        });
+        return positions;
     }
 
     public static HiddenShopsCache getInstance() {
@@ -0,0 +1,76 @@
+package uk.mangostudios.finditemaddon.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.Nullable;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+import uk.mangostudios.finditemaddon.metrics.SearchMetrics;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Snapshot of shop owner balances, so sell-side searches can check whether an owner
+ * can afford a price without a blocking economy call per shop.
+ * <p>
+ * Each owner's balance is fetched at most once per refresh window, and dropped early
+ * whenever a transaction touches one of their shops.
+ */
+public class OwnerBalanceCache {
+
+    private static OwnerBalanceCache instance;
+
+    private final Function<UUID, Double> balanceLookup;
+    private volatile LoadingCache<UUID, Double> balances;
+
+    public OwnerBalanceCache(Economy economy) {
+        this(owner -> economy.getBalance(Bukkit.getOfflinePlayer(owner)));
+    }
+
+    /**
+     * @param balanceLookup Looks up an owner's current balance, e.g. from a stubbed economy
+     */
+    public OwnerBalanceCache(Function<UUID, Double> balanceLookup) {
+        this.balanceLookup = balanceLookup;
+        this.reload();
+        instance = this;
+    }
+
+    /**
+     * Rebuilds the cache using the refresh window from the config
+     */
+    public void reload() {
+        this.balances = CacheBuilder.newBuilder()
+                .expireAfterWrite(FindItemAddOn.getConfigProvider().OWNER_BALANCE_REFRESH_SECONDS, TimeUnit.SECONDS)
+                .recordStats()
+                .build(CacheLoader.from(balanceLookup::apply));
+        SearchMetrics.getInstance().registerCache("owner_balance", this.balances);
+    }
+
+    /**
+     * Checks whether a shop owner can afford the given amount, using their cached balance
+     *
+     * @param owner  The shop owner, or {@link ShopItem#NO_OWNER}
+     * @param amount The amount to check
+     * @return If the owner has at least the amount, or true if the shop has no player owner
+     */
+    public boolean has(@Nullable UUID owner, double amount) {
+        if (owner == null || ShopItem.NO_OWNER.equals(owner)) return true;
+        return balances.getUnchecked(owner) >= amount;
+    }
+
+    public void invalidate(@Nullable UUID owner) {
+        if (owner == null) return;
+        balances.invalidate(owner);
+    }
+
+    public static OwnerBalanceCache getInstance() {
+        return instance;
+    }
+
+}
@@ -0,0 +1,382 @@
+package uk.mangostudios.finditemaddon.cache;
+
+import com.olziedev.playerwarps.api.warp.WVisit;
+import com.olziedev.playerwarps.api.warp.Warp;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+import uk.mangostudios.finditemaddon.util.Colourify;
+import uk.mangostudios.finditemaddon.util.LocationUtil;
+import uk.mangostudios.finditemaddon.util.PlayerWarpsUtil;
+import uk.mangostudios.finditemaddon.util.SearchExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Safe teleport destinations around shops, worked out in the background from chunk snapshots,
+ * so a teleport click is a lookup rather than a probe of the live world, and never loads a chunk synchronously.
+ * <p>
+ * A destination is dropped and queued to be worked out again whenever a block it was based on changes,
+ * see {@link uk.mangostudios.finditemaddon.listener.ShopSurroundingsListeners}.
+ */
+public class SafeLocationCache {
+
+    private static SafeLocationCache instance;
+
+    // World name -> Packed column (x, z) -> Shop block y -> Destination
+    private final Map<String, Map<Long, Map<Integer, Destination>>> destinations = new ConcurrentHashMap<>();
+    // Shops whose destination has to be worked out (again)
+    private final Set<ShopPosition> staleShops = ConcurrentHashMap.newKeySet();
+
+    public SafeLocationCache() {
+        instance = this;
+    }
+
+    /**
+     * Drops every destination and queues all the given shops to be worked out again
+     *
+     * @param shopLocations The locations of all shops
+     */
+    public void rebuild(Collection<Location> shopLocations) {
+        destinations.clear();
+        staleShops.clear();
+        shopLocations.forEach(this::track);
+    }
+
+    /**
+     * Queues a shop's destination to be worked out, e.g. after it was created
+     *
+     * @param shopLocation The shop location
+     */
+    public void track(Location shopLocation) {
+        if (shopLocation.getWorld() == null) return;
+        staleShops.add(ShopPosition.of(shopLocation));
+    }
+
+    /**
+     * Forgets a shop's destination, e.g. after it was deleted
+     *
+     * @param shopLocation The shop location
+     */
+    public void untrack(Location shopLocation) {
+        if (shopLocation.getWorld() == null) return;
+        ShopPosition position = ShopPosition.of(shopLocation);
+        staleShops.remove(position);
+        Map<Integer, Destination> column = this.getColumn(position.world(), position.x(), position.z());
+        if (column != null) column.remove(position.y());
+    }
+
+    /**
+     * Returns whether a shop's destination has been worked out
+     *
+     * @param shopLocation The shop location
+     */
+    public boolean isCached(Location shopLocation) {
+        if (shopLocation.getWorld() == null) return false;
+        ShopPosition position = ShopPosition.of(shopLocation);
+        Map<Integer, Destination> column = this.getColumn(position.world(), position.x(), position.z());
+        Destination destination = column == null ? null : column.get(position.y());
+        return destination != null && !destination.pending();
+    }
+
+    /**
+     * Finds a safe teleport destination around a shop. Cached destinations are returned straight away. Otherwise the
+     * chunks around the shop are loaded through Paper's async chunk API if needed, and the spot is worked out off the
+     * main thread from snapshots of them, then cached. Must be called on the main thread.
+     *
+     * @param shopLocation The shop location
+     * @return Completes with the destination, or null if there is no safe spot around the shop.
+     * May complete off the main thread.
+     */
+    public CompletableFuture<@Nullable Location> findSafeLocation(Location shopLocation) {
+        World world = shopLocation.getWorld();
+        if (world == null) return CompletableFuture.completedFuture(null);
+        ShopPosition position = ShopPosition.of(shopLocation);
+        Map<Integer, Destination> column = this.getColumn(position.world(), position.x(), position.z());
+        Destination destination = column == null ? null : column.get(position.y());
+        if (destination != null && !destination.pending()) {
+            return CompletableFuture.completedFuture(destination.location() == null ? null : destination.location().clone());
+        }
+
+        // Without generating chunks, the shop chunk always exists but a neighbour might not
+        List<CompletableFuture<Chunk>> chunkLoads = new ArrayList<>();
+        forEachChunkAround(position, (chunkX, chunkZ) -> chunkLoads.add(world.getChunkAtAsync(chunkX, chunkZ, false)));
+        // Paper completes chunk loads on the main thread, or they were already complete and this runs right away
+        return CompletableFuture.allOf(chunkLoads.toArray(new CompletableFuture[0])).thenCompose(ignored -> {
+            Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+            for (CompletableFuture<Chunk> chunkLoad : chunkLoads) {
+                Chunk chunk = chunkLoad.join();
+                if (chunk != null) chunks.put(chunkKey(chunk.getX(), chunk.getZ()), chunk.getChunkSnapshot(false, false, false));
+            }
+            // A neighbour that was never generated reads as void air, good enough for this teleport but not to cache
+            return this.search(world, position, chunks, chunks.size() == chunkLoads.size());
+        }).thenApply(location -> location == null ? null : location.clone());
+    }
+
+    /**
+     * Teleports a player to a shop they clicked in a search GUI. Charges the search cost and checks the shop's warp
+     * first, then teleports them to a safe spot around the shop, or the warp or the shop itself if there is none.
+     * Must be called on the main thread.
+     *
+     * @param player      The player
+     * @param shopItem    The shop
+     * @param nearestWarp The shop owner's nearest warp, if any
+     */
+    public void teleportToShop(Player player, ShopItem shopItem, @Nullable Warp nearestWarp) {
+        double costToSearch = FindItemAddOn.getConfigProvider().COST_TO_SEARCH;
+        if (costToSearch > 0) {
+            if (!FindItemAddOn.getInstance().getEconomy().withdrawPlayer(player, costToSearch).transactionSuccess()) {
+                player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().NOT_ENOUGH_MONEY_MSG
+                        .replace("<cost>", String.valueOf(costToSearch))));
+                return;
+            }
+        }
+
+        if (PlayerWarpsUtil.isPlayerBanned(nearestWarp, player)) return;
+        if (PlayerWarpsUtil.isWarpLocked(nearestWarp, player)) return;
+        if (nearestWarp != null) {
+            final WVisit warpVisit = nearestWarp.getWarpVisit();
+            if (!warpVisit.getWarpVisited().containsKey(player.getUniqueId())) {
+                warpVisit.addWarpVisited(player.getUniqueId());
+            }
+        }
+
+        player.closeInventory();
+
+        // Loads the shop's chunk without blocking if needed, and picks the spot off the main thread
+        this.findSafeLocation(shopItem.shopLocation())
+                .exceptionally(throwable -> {
+                    // The player already paid, so still teleport them, to the warp or the shop itself
+                    FindItemAddOn.getInstance().getLogger().warning("Failed to find a safe location around a shop: " + throwable.getMessage());
+                    return null;
+                })
+                .thenAccept(safeLocationAroundShop ->
+                        Bukkit.getScheduler().runTask(FindItemAddOn.getInstance(), () -> {
+                            if (!player.isOnline()) return;
+                            Location teleportLocation = safeLocationAroundShop == null ? (nearestWarp == null ? shopItem.shopLocation() : nearestWarp.getWarpLocation().getLocation()) : safeLocationAroundShop;
+                            player.teleportAsync(teleportLocation);
+                        }));
+    }
+
+    /**
+     * Drops the destinations of the shops whose safe spot search reads the given block, and queues them
+     * to be worked out again. Cheap enough to call for every block change.
+     */
+    public void invalidateAround(String world, int x, int y, int z) {
+        Map<Long, Map<Integer, Destination>> worldDestinations = destinations.get(world);
+        if (worldDestinations == null) return;
+        // The search reads the four blocks next to the shop, from head height down to the search limit
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                Map<Integer, Destination> column = worldDestinations.get(columnKey(x + dx, z + dz));
+                if (column == null || column.isEmpty()) continue;
+                int shopX = x + dx;
+                int shopZ = z + dz;
+                column.keySet().removeIf(shopY -> {
+                    if (shopY < y - 1 || shopY > y + LocationUtil.MAX_DOWNWARD_SEARCH_LIMIT) return false;
+                    staleShops.add(new ShopPosition(world, shopX, shopY, shopZ));
+                    return true;
+                });
+            }
+        }
+    }
+
+    /**
+     * Takes chunk snapshots for queued shops until the per-tick scan budget is spent, and works out their
+     * destinations off the main thread. Shops whose search would read an unloaded chunk are dropped from the queue,
+     * they are queued again when that chunk loads. Must be called on the main thread.
+     */
+    public void refreshStale() {
+        if (staleShops.isEmpty()) return;
+        long deadline = System.nanoTime() + Math.max(1, FindItemAddOn.getConfigProvider().SCAN_TICK_BUDGET_MS) * 1_000_000L;
+        // Shops next to each other share their snapshots within a tick
+        Map<String, Map<Long, ChunkSnapshot>> tickSnapshots = new HashMap<>();
+        Iterator<ShopPosition> iterator = staleShops.iterator();
+        while (iterator.hasNext() && System.nanoTime() < deadline) {
+            ShopPosition position = iterator.next();
+            iterator.remove();
+            World world = Bukkit.getWorld(position.world());
+            if (world == null || !isLoadedAround(world, position)) continue;
+
+            Map<Long, ChunkSnapshot> worldSnapshots = tickSnapshots.computeIfAbsent(position.world(), k -> new HashMap<>());
+            Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+            forEachChunkAround(position, (chunkX, chunkZ) -> chunks.put(chunkKey(chunkX, chunkZ), worldSnapshots.computeIfAbsent(
+                    chunkKey(chunkX, chunkZ), k -> world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false))));
+            this.search(world, position, chunks, true).exceptionally(throwable -> {
+                FindItemAddOn.getInstance().getLogger().warning("Failed to find a safe location around a shop: " + throwable.getMessage());
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Works out a shop's destination off the main thread and caches it. Must be called on the main thread.
+     *
+     * @param chunks   Snapshots of the chunks around the shop, keyed by {@link #chunkKey(int, int)}
+     * @param complete Whether there is a snapshot of every chunk the search reads; otherwise the result isn't cached
+     * @return Completes with the destination, once cached if complete
+     */
+    private CompletableFuture<@Nullable Location> search(World world, ShopPosition position, Map<Long, ChunkSnapshot> chunks, boolean complete) {
+        SnapshotReader reader = new SnapshotReader(world.getMinHeight(), world.getMaxHeight(), chunks);
+        Location shopLocation = new Location(world, position.x(), position.y(), position.z());
+        if (!complete) {
+            return CompletableFuture.supplyAsync(() -> LocationUtil.findSafeLocationAroundShop(shopLocation, reader), SearchExecutor.get());
+        }
+
+        // Marks the search as running, so a block change while it runs drops the marker and its result.
+        // Each search has its own marker, so it never stores its result over a newer search of the same shop.
+        Destination pending = new Destination(null, true);
+        this.store(position, pending);
+        return CompletableFuture.supplyAsync(() -> LocationUtil.findSafeLocationAroundShop(shopLocation, reader), SearchExecutor.get())
+                .thenApply(location -> {
+                    Map<Integer, Destination> column = this.getColumn(position.world(), position.x(), position.z());
+                    if (column != null) column.replace(position.y(), pending, new Destination(location, false));
+                    return location;
+                });
+    }
+
+    /**
+     * Visits the chunks the search around a shop reads, as it reaches one block past the shop into the next chunk
+     */
+    private static void forEachChunkAround(ShopPosition position, ChunkVisitor visitor) {
+        int minChunkX = (position.x() - 1) >> 4;
+        int maxChunkX = (position.x() + 1) >> 4;
+        int minChunkZ = (position.z() - 1) >> 4;
+        int maxChunkZ = (position.z() + 1) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                visitor.visit(chunkX, chunkZ);
+            }
+        }
+    }
+
+    /**
+     * Returns whether every chunk the search around a shop reads is loaded
+     */
+    private static boolean isLoadedAround(World world, ShopPosition position) {
+        for (int chunkX = (position.x() - 1) >> 4; chunkX <= (position.x() + 1) >> 4; chunkX++) {
+            for (int chunkZ = (position.z() - 1) >> 4; chunkZ <= (position.z() + 1) >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the search around a shop reads any block of the given chunk, as it reaches one block
+     * past the shop into the neighbouring chunks
+     *
+     * @param shopLocation The shop location
+     */
+    public static boolean readsChunk(Location shopLocation, int chunkX, int chunkZ) {
+        int minX = chunkX << 4;
+        int minZ = chunkZ << 4;
+        return shopLocation.getBlockX() >= minX - 1 && shopLocation.getBlockX() <= minX + 16
+                && shopLocation.getBlockZ() >= minZ - 1 && shopLocation.getBlockZ() <= minZ + 16;
+    }
+
+    private void store(ShopPosition position, Destination destination) {
+        destinations.computeIfAbsent(position.world(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(columnKey(position.x(), position.z()), k -> new ConcurrentHashMap<>())
+                .put(position.y(), destination);
+    }
+
+    @Nullable
+    private Map<Integer, Destination> getColumn(String world, int x, int z) {
+        Map<Long, Map<Integer, Destination>> worldDestinations = destinations.get(world);
+        return worldDestinations == null ? null : worldDestinations.get(columnKey(x, z));
+    }
+
+    private static long columnKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return columnKey(chunkX, chunkZ);
+    }
+
+    public static SafeLocationCache getInstance() {
+        return instance;
+    }
+
+    @FunctionalInterface
+    private interface ChunkVisitor {
+
+        void visit(int chunkX, int chunkZ);
+    }
+
+    private record ShopPosition(String world, int x, int y, int z) {
+
+        private static ShopPosition of(Location location) {
+            return new ShopPosition(location.getWorld().getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        }
+    }
+
+    /**
+     * A worked out destination, or the marker of a running search. Deliberately not a record:
+     * destinations are compared by identity, so a search only ever replaces its own marker.
+     */
+    private static final class Destination {
+
+        private final @Nullable Location location;
+        private final boolean pending;
+
+        /**
+         * @param location The safe spot, or null if there is none around the shop
+         * @param pending  Whether the search is still running
+         */
+        private Destination(@Nullable Location location, boolean pending) {
+            this.location = location;
+            this.pending = pending;
+        }
+
+        private @Nullable Location location() {
+            return location;
+        }
+
+        private boolean pending() {
+            return pending;
+        }
+    }
+
+    /**
+     * Reads blocks from chunk snapshots. Blocks in chunks that weren't loaded read as void air, which is never a safe spot.
+     */
+    private record SnapshotReader(int minHeight, int maxHeight, Map<Long, ChunkSnapshot> chunks) implements LocationUtil.BlockReader {
+
+        @Override
+        public Material getType(int x, int y, int z) {
+            ChunkSnapshot snapshot = this.getSnapshot(x, y, z);
+            return snapshot == null ? Material.VOID_AIR : snapshot.getBlockType(x & 15, y, z & 15);
+        }
+
+        @Override
+        public BlockData getBlockData(int x, int y, int z) {
+            ChunkSnapshot snapshot = this.getSnapshot(x, y, z);
+            return snapshot == null ? Material.VOID_AIR.createBlockData() : snapshot.getBlockData(x & 15, y, z & 15);
+        }
+
+        @Nullable
+        private ChunkSnapshot getSnapshot(int x, int y, int z) {
+            if (y < minHeight || y >= maxHeight) return null;
+            return chunks.get(chunkKey(x >> 4, z >> 4));
+        }
+    }
+
+}
@@ -22,21 +22,29 @@ import org.apache.commons.lang3.StringUtils;
 import org.bukkit.Material;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
 import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.cache.OwnerBalanceCache;
 import uk.mangostudios.finditemaddon.config.ConfigManager;
 import uk.mangostudios.finditemaddon.external.PlayerWarpsHandler;
 import uk.mangostudios.finditemaddon.external.QuickShopHandler;
 import uk.mangostudios.finditemaddon.gui.ShopsGui;
-import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+import uk.mangostudios.finditemaddon.gui.impl.LazyPaginatedGui;
+import uk.mangostudios.finditemaddon.index.StreamedResults;
+import uk.mangostudios.finditemaddon.metrics.SearchMetrics;
+import uk.mangostudios.finditemaddon.network.FederatedShopIndex;
 import uk.mangostudios.finditemaddon.util.Colourify;
+import uk.mangostudios.finditemaddon.util.SearchExecutor;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class CmdExecutorHandler {
 
+    private static final int MAX_FUZZY_SUGGESTIONS = 3;
+
     /**
-     * Handles the main shop search process
+     * Handles the main shop search process. The search itself runs on the {@link SearchExecutor}.
      *
      * @param isBuying Whether the player is buying or selling
      * @param player   Player who is running the command
@@ -45,26 +53,109 @@ public class CmdExecutorHandler {
     public void handleShopSearch(boolean isBuying, Player player, String matcher) {
         player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().SHOP_SEARCH_LOADING_MSG));
 
+        CompletableFuture.runAsync(() -> this.searchShops(isBuying, player, matcher), SearchExecutor.get())
+                .exceptionally(throwable -> {
+                    FindItemAddOn.getInstance().getLogger().severe("Failed to search shops: " + throwable.getMessage());
+                    return null;
+                });
+    }
+
+    private void searchShops(boolean isBuying, Player player, String matcher) {
+        StreamedResults results = this.findResults(isBuying, player, matcher);
+        boolean foundRemote = this.showRemoteResults(isBuying, player, matcher);
+        if (results != null) {
+            showResults(player, matcher, results);
+            return;
+        }
+        if (foundRemote) {
+            return;
+        }
+
+        // Nothing matched exactly, try the closest item names in case of a typo
+        for (String suggestion : FindItemAddOn.getQsApiInstance().findClosestTerms(matcher, MAX_FUZZY_SUGGESTIONS)) {
+            results = this.findResults(isBuying, player, suggestion);
+            if (results != null) {
+                if (!StringUtils.isEmpty(FindItemAddOn.getConfigProvider().FUZZY_MATCH_MSG)) {
+                    player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX
+                            + FindItemAddOn.getConfigProvider().FUZZY_MATCH_MSG.replace("<match>", suggestion.replace('_', ' '))));
+                }
+                showResults(player, suggestion, results);
+                return;
+            }
+        }
+
+        if (!StringUtils.isEmpty(FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG)) {
+            player.sendMessage(Colourify.colour(
+                    FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG));
+        }
+    }
+
+    /**
+     * Searches by item type if the matcher names one, falling back to display names
+     *
+     * @return The results, or null if nothing was found
+     */
+    private @Nullable StreamedResults findResults(boolean isBuying, Player player, String matcher) {
         QuickShopHandler quickShopApi = FindItemAddOn.getQsApiInstance();
         Material mat = Material.getMaterial(matcher.toUpperCase());
         if (mat != null && mat.isItem()) {
-            List<ShopItem> searchResultList = quickShopApi.findItemBasedOnTypeFromAllShops(new ItemStack(mat), isBuying, player);
-            if (!searchResultList.isEmpty()) {
-                ShopsGui.open(player, matcher, searchResultList);
-                return;
+            StreamedResults results = quickShopApi.searchByType(mat, isBuying, player, LazyPaginatedGui.PAGE_SIZE);
+            if (!results.isEmpty()) {
+                return results;
             }
         }
 
-        List<ShopItem> searchResultList = quickShopApi.findItemBasedOnDisplayNameFromAllShops(matcher, isBuying, player);
-        if (!searchResultList.isEmpty()) {
-            ShopsGui.open(player, matcher, searchResultList);
-            return;
+        StreamedResults results = quickShopApi.searchByDisplayName(matcher, isBuying, player, LazyPaginatedGui.PAGE_SIZE);
+        return results.isEmpty() ? null : results;
+    }
+
+    /**
+     * Tells the player how many matching shops each other server of the network has. Only reads the
+     * {@link FederatedShopIndex}, so this never waits on another server.
+     *
+     * @return Whether any other server has matching shops
+     */
+    private boolean showRemoteResults(boolean isBuying, Player player, String matcher) {
+        FederatedShopIndex federatedIndex = FederatedShopIndex.getInstance();
+        if (federatedIndex == null) {
+            return false;
         }
 
-        if (!StringUtils.isEmpty(FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG)) {
-            player.sendMessage(Colourify.colour(
-                    FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG));
+        Material mat = Material.getMaterial(matcher.toUpperCase());
+        List<FederatedShopIndex.RemoteResults> remoteResults = mat != null && mat.isItem()
+                ? federatedIndex.searchByType(mat, isBuying) : List.of();
+        if (remoteResults.isEmpty()) {
+            remoteResults = federatedIndex.searchByDisplayName(matcher, isBuying);
         }
+
+        if (!StringUtils.isEmpty(FindItemAddOn.getConfigProvider().REMOTE_SHOPS_FOUND_MSG)) {
+            for (FederatedShopIndex.RemoteResults remote : remoteResults) {
+                player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX
+                        + FindItemAddOn.getConfigProvider().REMOTE_SHOPS_FOUND_MSG
+                        .replace("<count>", String.valueOf(remote.shops()))
+                        .replace("<server>", remote.server())
+                        .replace("<price>", String.valueOf(remote.bestPrice()))));
+            }
+        }
+        return !remoteResults.isEmpty();
+    }
+
+    /**
+     * Opens the results GUI with the first page, and fills in the rest once the full result is ready
+     */
+    private void showResults(Player player, String matcher, StreamedResults results) {
+        if (results.allResults().isDone()) {
+            ShopsGui.open(player, matcher, results.allResults().join());
+            return;
+        }
+
+        ShopsGui shopsGui = ShopsGui.open(player, matcher, results.firstPage());
+        results.allResults()
+                .thenAccept(shopsGui::setResults)
+                .exceptionally(throwable -> {
+                    FindItemAddOn.getInstance().getLogger().severe("Failed to complete shop search: " + throwable.getMessage());
+                    return null;
+                });
     }
 
     /**
@@ -76,7 +167,9 @@ public class CmdExecutorHandler {
         ConfigManager.reloadConfig();
         ConfigManager.saveConfig();
         FindItemAddOn.initConfigProvider();
+        OwnerBalanceCache.getInstance().reload();
         QuickShopHandler.getInstance().reload();
+        SearchMetrics.getInstance().scheduleDump(FindItemAddOn.getConfigProvider().METRICS_DUMP_SECONDS);
         PlayerWarpsHandler.updateAllWarpsFromAPI(); 
         commandSender.sendMessage(Colourify.colour("<green>Plugin reloaded!"));
     }
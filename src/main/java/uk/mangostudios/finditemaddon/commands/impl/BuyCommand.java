@@ -1,15 +1,22 @@
 package uk.mangostudios.finditemaddon.commands.impl;
 
+import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.incendo.cloud.annotation.specifier.Greedy;
 import org.incendo.cloud.annotations.Argument;
 import org.incendo.cloud.annotations.Command;
+import org.incendo.cloud.annotations.suggestion.Suggestions;
+import org.incendo.cloud.context.CommandContext;
 import uk.mangostudios.finditemaddon.FindItemAddOn;
 import uk.mangostudios.finditemaddon.commands.CmdExecutorHandler;
 import uk.mangostudios.finditemaddon.util.Colourify;
 
+import java.util.List;
+
 public class BuyCommand extends AbstractCommand {
 
+    private static final int MAX_SUGGESTIONS = 50;
+
     private final CmdExecutorHandler cmdExecutor;
 
     public BuyCommand(CmdExecutorHandler cmdExecutor) {
@@ -17,7 +24,7 @@ public class BuyCommand extends AbstractCommand {
     }
 
     @Command("finditem|shopsearch|searchshop to-buy <search>")
-    private void onBuy(Player player, @Argument("search") @Greedy String search) {
+    private void onBuy(Player player, @Argument(value = "search", suggestions = "to-buy-search") @Greedy String search) {
         if (search.length() <= 2) {
             player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().QUERY_TOO_SHORT_MSG));
             return;
@@ -26,4 +33,11 @@ public class BuyCommand extends AbstractCommand {
         this.cmdExecutor.handleShopSearch(true, player, search);
     }
 
+    @Suggestions("to-buy-search")
+    private List<String> suggestSearches(CommandContext<CommandSender> context, String input) {
+        // Shops are indexed once the server has finished starting
+        if (FindItemAddOn.getQsApiInstance() == null) return List.of();
+        return FindItemAddOn.getQsApiInstance().suggestSearches(input, true, MAX_SUGGESTIONS);
+    }
+
 }
@@ -1,15 +1,22 @@
 package uk.mangostudios.finditemaddon.commands.impl;
 
+import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.incendo.cloud.annotation.specifier.Greedy;
 import org.incendo.cloud.annotations.Argument;
 import org.incendo.cloud.annotations.Command;
+import org.incendo.cloud.annotations.suggestion.Suggestions;
+import org.incendo.cloud.context.CommandContext;
 import uk.mangostudios.finditemaddon.FindItemAddOn;
 import uk.mangostudios.finditemaddon.commands.CmdExecutorHandler;
 import uk.mangostudios.finditemaddon.util.Colourify;
 
+import java.util.List;
+
 public class SellCommand extends AbstractCommand {
 
+    private static final int MAX_SUGGESTIONS = 50;
+
     private final CmdExecutorHandler cmdExecutor;
 
     public SellCommand(CmdExecutorHandler cmdExecutor) {
@@ -17,7 +24,7 @@ public class SellCommand extends AbstractCommand {
     }
 
     @Command("finditem|shopsearch|searchshop to-sell <search>")
-    private void onSell(Player player, @Argument("search") @Greedy String search) {
+    private void onSell(Player player, @Argument(value = "search", suggestions = "to-sell-search") @Greedy String search) {
         if (search.length() <= 2) {
             player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().QUERY_TOO_SHORT_MSG));
             return;
@@ -25,4 +32,12 @@ public class SellCommand extends AbstractCommand {
 
         this.cmdExecutor.handleShopSearch(false, player, search);
     }
+
+    @Suggestions("to-sell-search")
+    private List<String> suggestSearches(CommandContext<CommandSender> context, String input) {
+        // Shops are indexed once the server has finished starting
+        if (FindItemAddOn.getQsApiInstance() == null) return List.of();
+        return FindItemAddOn.getQsApiInstance().suggestSearches(input, false, MAX_SUGGESTIONS);
+    }
+
 }
@@ -0,0 +1,19 @@
+package uk.mangostudios.finditemaddon.commands.impl;
+
+import org.bukkit.command.CommandSender;
+import org.incendo.cloud.annotations.Command;
+import org.incendo.cloud.annotations.Permission;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.metrics.SearchMetrics;
+import uk.mangostudios.finditemaddon.util.Colourify;
+
+public class StatsCommand extends AbstractCommand {
+
+    @Command("finditem|shopsearch|searchshop stats")
+    @Permission("finditem.stats")
+    private void onStats(CommandSender sender) {
+        sender.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + "<white>Search statistics since startup"));
+        SearchMetrics.getInstance().formatSummary().forEach(line -> sender.sendMessage(Colourify.colour(line)));
+    }
+
+}
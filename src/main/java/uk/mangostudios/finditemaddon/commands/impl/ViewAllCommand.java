@@ -1,22 +1,24 @@
 package uk.mangostudios.finditemaddon.commands.impl;
 
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.incendo.cloud.annotations.Argument;
 import org.incendo.cloud.annotations.Command;
+import org.incendo.cloud.annotations.suggestion.Suggestions;
+import org.incendo.cloud.context.CommandContext;
 import uk.mangostudios.finditemaddon.FindItemAddOn;
 import uk.mangostudios.finditemaddon.external.QuickShopHandler;
 import uk.mangostudios.finditemaddon.gui.AllShopsGui;
-import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
 import uk.mangostudios.finditemaddon.util.Colourify;
+import uk.mangostudios.finditemaddon.util.SearchExecutor;
 
-import java.util.Comparator;
 import java.util.List;
 
 public class ViewAllCommand extends AbstractCommand {
 
     @Command("finditem|shopsearch|searchshop view-all <mode>")
-    private void onViewAll(Player player, @Argument("mode") String mode) {
+    private void onViewAll(Player player, @Argument(value = "mode", suggestions = "view-all-mode") String mode) {
         boolean toBuy;
         String lower = mode.toLowerCase();
         if (lower.equals("to-buy") || lower.equals("tobuy") || lower.equals("buy")) {
@@ -32,20 +34,27 @@ public class ViewAllCommand extends AbstractCommand {
 
         QuickShopHandler quickShopApi = QuickShopHandler.getInstance();
 
-        // Use cached filtered shops from QuickShopHandler (fast). Caller must still perform per-player checks.
-        List<com.ghostchu.quickshop.api.shop.Shop> allShops = quickShopApi.getAllShopsFiltered(toBuy);
-        List<ShopItem> shopItems = quickShopApi.getAllShopItems(toBuy);
-
-        // sort alphabetically by item display name
-        shopItems.sort(Comparator.comparing(ShopItem::itemName));
-
-        if (shopItems.isEmpty()) {
-            if (FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG != null && !FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG.isEmpty()) {
-                player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG));
-            }
-            return;
-        }
+        // Already sorted alphabetically by item display name; the per-player checks run off the main thread
+        quickShopApi.getAllShopItems(toBuy)
+                .thenApplyAsync(allShopItems -> quickShopApi.filterForPlayer(allShopItems, player), SearchExecutor.get())
+                .thenAccept(shopItems -> {
+                    if (shopItems.isEmpty()) {
+                        if (FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG != null && !FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG.isEmpty()) {
+                            player.sendMessage(Colourify.colour(FindItemAddOn.getConfigProvider().PLUGIN_PREFIX + FindItemAddOn.getConfigProvider().NO_SHOP_FOUND_MSG));
+                        }
+                        return;
+                    }
+
+                    AllShopsGui.open(player, toBuy, shopItems);
+                })
+                .exceptionally(throwable -> {
+                    FindItemAddOn.getInstance().getLogger().severe("Failed to list all shops: " + throwable.getMessage());
+                    return null;
+                });
+    }
 
-        AllShopsGui.open(player, toBuy, shopItems);
+    @Suggestions("view-all-mode")
+    private List<String> suggestModes(CommandContext<CommandSender> context, String input) {
+        return List.of("to-buy", "to-sell");
     }
 }
@@ -43,7 +43,19 @@ public class ConfigManager {
         configFileConfiguration = YamlConfiguration.loadConfiguration(configFile);
     }
 
+    /**
+     * Uses an already loaded config rather than the plugin's config file, e.g. to run outside a server.
+     * The config isn't saved or reloaded from disk.
+     *
+     * @param configuration The config
+     */
+    public static void setupConfig(FileConfiguration configuration) {
+        configFile = null;
+        configFileConfiguration = configuration;
+    }
+
     public static void saveConfig() {
+        if (configFile == null) return;
         try {
             configFileConfiguration.save(configFile);
         } catch (IOException ignored) {
@@ -55,6 +67,7 @@ public class ConfigManager {
     }
 
     public static void reloadConfig() {
+        if (configFile == null) return;
         configFileConfiguration = YamlConfiguration.loadConfiguration(configFile);
     }
 }
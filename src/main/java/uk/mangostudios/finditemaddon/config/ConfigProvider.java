@@ -20,6 +20,7 @@ package uk.mangostudios.finditemaddon.config;
 
 import org.bukkit.Bukkit;
 import org.bukkit.World;
+import uk.mangostudios.finditemaddon.util.LoreTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,11 +29,13 @@ public class ConfigProvider {
 
     private static final String FIND_ITEM_COMMAND = "find-item-command.";
     private static final String SHOP_GUI = "shop-gui.";
+    private static final String NETWORK = "network.";
     public final String PLUGIN_PREFIX = ConfigManager.get().getString("plugin-prefix");
 
     // Messages
     public final String SHOP_SEARCH_LOADING_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "shop-search-loading-message");
     public final String NO_SHOP_FOUND_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "no-shop-found-message");
+    public final String FUZZY_MATCH_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "fuzzy-match-message");
     public final String SHOP_TP_BANNED_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "shop-tp-banned-message");
     public final String QUERY_TOO_SHORT_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "query-too-short-message");
     public final String NOT_LOOKING_AT_SHOP_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "not-looking-at-shop-message");
@@ -44,6 +47,7 @@ public class ConfigProvider {
     public final String HAND_EMPTY_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "hand-empty-message");
     public final double COST_TO_SEARCH = ConfigManager.get().getDouble(FIND_ITEM_COMMAND + "cost-to-search");
     public final String NOT_ENOUGH_MONEY_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "not-enough-money-message");
+    public final String REMOTE_SHOPS_FOUND_MSG = ConfigManager.get().getString(FIND_ITEM_COMMAND + "remote-shops-found-message");
 
     // GUI
     public final int SHOP_SORTING_METHOD = ConfigManager.get().getInt("shop-sorting-method");
@@ -52,6 +56,12 @@ public class ConfigProvider {
     public final List<String> SHOP_GUI_ITEM_LORE = (List<String>) ConfigManager.get().getList("shop-gui-item-lore");
     public final List<String> MANAGE_SHOP_GUI_HIDDEN_ITEM_LORE = (List<String>) ConfigManager.get().getList("manage-shop-gui-hidden-item-lore");
     public final List<String> MANAGE_SHOP_GUI_SHOWN_ITEM_LORE = (List<String>) ConfigManager.get().getList("manage-shop-gui-shown-item-lore");
+    public final LoreTemplate SHOP_GUI_ITEM_LORE_TEMPLATE = LoreTemplate.compile(SHOP_GUI_ITEM_LORE,
+            "price", "stock", "owner", "cost", "location", "world", "warp");
+    public final LoreTemplate MANAGE_SHOP_GUI_HIDDEN_ITEM_LORE_TEMPLATE = LoreTemplate.compile(MANAGE_SHOP_GUI_HIDDEN_ITEM_LORE,
+            "item", "location", "world", "distance");
+    public final LoreTemplate MANAGE_SHOP_GUI_SHOWN_ITEM_LORE_TEMPLATE = LoreTemplate.compile(MANAGE_SHOP_GUI_SHOWN_ITEM_LORE,
+            "item", "location", "world", "distance");
     public final String SHOP_GUI_BACK_BUTTON_MATERIAL = ConfigManager.get().getString(SHOP_GUI + "back-button-material");
     public final String SHOP_GUI_BACK_BUTTON_TEXT = ConfigManager.get().getString(SHOP_GUI + "back-button-text");
     public final String SHOP_GUI_NEXT_BUTTON_MATERIAL = ConfigManager.get().getString(SHOP_GUI + "next-button-material");
@@ -62,6 +72,19 @@ public class ConfigProvider {
     // Config
     public final boolean IGNORE_EMPTY_CHESTS = ConfigManager.get().getBoolean("ignore-empty-chests");
     public final List<String> BLACKLISTED_WORLDS = (List<String>) ConfigManager.get().getList("blacklisted-worlds");
+    public final int OWNER_BALANCE_REFRESH_SECONDS = ConfigManager.get().getInt("owner-balance-refresh-seconds", 30);
+    public final int SCAN_TICK_BUDGET_MS = ConfigManager.get().getInt("scan-tick-budget-ms", 2);
+    public final int METRICS_DUMP_SECONDS = ConfigManager.get().getInt("metrics-dump-seconds", 0);
+    public final int SNAPSHOT_REFRESH_SECONDS = ConfigManager.get().getInt("snapshot-refresh-seconds", 300);
+
+    // Network
+    public final boolean NETWORK_ENABLED = ConfigManager.get().getBoolean(NETWORK + "enabled", false);
+    public final String NETWORK_SERVER_NAME = ConfigManager.get().getString(NETWORK + "server-name", "server");
+    public final String NETWORK_TRANSPORT = ConfigManager.get().getString(NETWORK + "transport", "file");
+    public final String NETWORK_FILE_DIRECTORY = ConfigManager.get().getString(NETWORK + "file-directory", "../finditem-network");
+    public final int NETWORK_PUBLISH_INTERVAL_SECONDS = ConfigManager.get().getInt(NETWORK + "publish-interval-seconds", 5);
+    public final int NETWORK_FULL_SNAPSHOT_INTERVAL_SECONDS = ConfigManager.get().getInt(NETWORK + "full-snapshot-interval-seconds", 60);
+    public final int NETWORK_SERVER_TIMEOUT_SECONDS = ConfigManager.get().getInt(NETWORK + "server-timeout-seconds", 30);
 
     private final List<World> blacklistedWorldsList = new ArrayList<>();
 
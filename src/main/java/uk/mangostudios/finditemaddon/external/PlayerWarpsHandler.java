@@ -20,6 +20,7 @@ package uk.mangostudios.finditemaddon.external;
 
 import com.olziedev.playerwarps.api.PlayerWarpsAPI;
 import com.olziedev.playerwarps.api.warp.Warp;
+import uk.mangostudios.finditemaddon.index.WarpIndex;
 
 import java.util.List;
 
@@ -27,6 +28,7 @@ public class PlayerWarpsHandler {
 
     private static List<Warp> allWarpsList = null;
     private static PlayerWarpsAPI playerWarpsAPI = null;
+    private static final WarpIndex warpIndex = new WarpIndex();
     private static final String ALL_WARPS_LIST_CLASSPATH = PlayerWarpsHandler.class.getCanonicalName() + ".allWarpsList";
 
     private PlayerWarpsHandler() {
@@ -36,6 +38,7 @@ public class PlayerWarpsHandler {
         PlayerWarpsAPI.getInstance(api -> {
             playerWarpsAPI = api;
         });
+        updateAllWarpsFromAPI();
     }
 
     /**
@@ -57,9 +60,14 @@ public class PlayerWarpsHandler {
         // Issue #24 Fix: Changing api instance to callback
         PlayerWarpsAPI.getInstance(api -> {
             allWarpsList = api.getPlayerWarps(false);
+            warpIndex.rebuild(allWarpsList);
         });
     }
 
+    public static WarpIndex getWarpIndex() {
+        return warpIndex;
+    }
+
     public static void updateWarpsOnEventCall(Warp warp, boolean isRemoved) {
         tryUpdateWarps(warp, isRemoved, 1);
     }
@@ -69,8 +77,10 @@ public class PlayerWarpsHandler {
         if (allWarpsList != null) {
             if (isRemoved) {
                 allWarpsList.remove(warp);
+                warpIndex.remove(warp);
             } else {
                 allWarpsList.add(warp);
+                warpIndex.add(warp);
             }
         } else {
             // Issue #21 Fix: forcing update of allWarpsList
@@ -21,238 +21,673 @@ package uk.mangostudios.finditemaddon.external;
 import com.ghostchu.quickshop.api.QuickShopAPI;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
-import com.ghostchu.quickshop.util.Util;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import com.olziedev.playerwarps.api.warp.Warp;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.cache.HiddenShopsCache;
+import uk.mangostudios.finditemaddon.cache.OwnerBalanceCache;
 import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+import uk.mangostudios.finditemaddon.index.FuzzyNameIndex;
+import uk.mangostudios.finditemaddon.index.ShopNameIndex;
+import uk.mangostudios.finditemaddon.index.ShopResults;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+import uk.mangostudios.finditemaddon.index.ShopSuggestionIndex;
+import uk.mangostudios.finditemaddon.index.ShopTypeIndex;
+import uk.mangostudios.finditemaddon.index.StreamedResults;
+import uk.mangostudios.finditemaddon.index.TopKCollector;
+import uk.mangostudios.finditemaddon.metrics.SearchMetrics;
+import uk.mangostudios.finditemaddon.util.BudgetedScanner;
+import uk.mangostudios.finditemaddon.util.PlayerWarpsUtil;
+import uk.mangostudios.finditemaddon.util.SearchExecutor;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
 
 public class QuickShopHandler {
 
+    private static final int SEARCH_CACHE_SIZE = 1000;
+    private static final List<String> ALL_SHOPS_KEYS = List.of("buy", "sell", "buy-shops", "sell-shops");
+
     private final QuickShopAPI api;
-    private final Cache<ItemStack, List<ShopItem>> searchedItemStacksToBuy = CacheBuilder.newBuilder()
-            .expireAfterWrite(1, TimeUnit.HOURS)
+    private final Function<Shop, ShopSnapshot> snapshotFactory;
+    // Search caches are kept current by shop events (see QuickShopEventListeners) rather than expiring
+    // Display name searches are keyed by their normalised query, see ShopNameIndex#normaliseQuery
+    private final Cache<Material, ShopResults> searchedTypesToBuy = CacheBuilder.newBuilder()
+            .maximumSize(SEARCH_CACHE_SIZE)
+            .recordStats()
             .build();
-    private final Cache<String, List<ShopItem>> searchedStringsToBuy = CacheBuilder.newBuilder()
-            .expireAfterWrite(1, TimeUnit.HOURS)
+    private final Cache<String, ShopResults> searchedStringsToBuy = CacheBuilder.newBuilder()
+            .maximumSize(SEARCH_CACHE_SIZE)
+            .recordStats()
             .build();
-    private final Cache<ItemStack, List<ShopItem>> searchedItemStacksToSell = CacheBuilder.newBuilder()
-            .expireAfterWrite(1, TimeUnit.HOURS)
+    private final Cache<Material, ShopResults> searchedTypesToSell = CacheBuilder.newBuilder()
+            .maximumSize(SEARCH_CACHE_SIZE)
+            .recordStats()
             .build();
-    private final Cache<String, List<ShopItem>> searchedStringsToSell = CacheBuilder.newBuilder()
-            .expireAfterWrite(1, TimeUnit.HOURS)
+    private final Cache<String, ShopResults> searchedStringsToSell = CacheBuilder.newBuilder()
+            .maximumSize(SEARCH_CACHE_SIZE)
+            .recordStats()
             .build();
-    // Cache for full "view all" lists (separately for buy/sell), small TTL to keep reasonably fresh
-    private final Cache<String, List<ShopItem>> allShopsCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(5, TimeUnit.MINUTES)
+    // Cache for full "view all" lists (separately for buy/sell), dropped whenever a shop is added, removed or
+    // re-listed, and refreshed in the background after stock or space changes
+    private final Cache<String, ShopResults> allShopsCache = CacheBuilder.newBuilder()
+            .recordStats()
             .build();
     // Cache for underlying Shop objects filtered for view-all (buy/sell)
     private final Cache<String, List<com.ghostchu.quickshop.api.shop.Shop>> allShopsShopCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .recordStats()
             .build();
 
+    // Material-keyed and display name indexes of snapshots of all shops, built on startup.
+    // All indexes are replaced together on the main thread by buildIndex, and only modified on the main thread.
+    private volatile ShopTypeIndex typeIndex = new ShopTypeIndex();
+    private volatile ShopNameIndex nameIndex = new ShopNameIndex();
+    // Material and display names for typo-tolerant suggestions
+    private volatile FuzzyNameIndex fuzzyIndex = new FuzzyNameIndex();
+    // Names of items in stock, for tab completion
+    private volatile ShopSuggestionIndex suggestionIndex = new ShopSuggestionIndex();
+    // The live shops behind the snapshots, only used for per-player permission checks
+    private volatile Map<Long, Shop> liveShops = new ConcurrentHashMap<>();
+    private volatile CompletableFuture<Void> rebuildingIndex = CompletableFuture.completedFuture(null);
+    // Shops created, changed or deleted while the indexes are rebuilt, re-applied to the new indexes
+    private volatile @Nullable Set<Long> changedDuringRebuild;
+    private volatile CompletableFuture<Void> refreshingSnapshots = CompletableFuture.completedFuture(null);
+    // Shops whose container contents changed since their snapshot was taken
+    private final Set<Long> changedStockShops = ConcurrentHashMap.newKeySet();
+
+    // Searches still being scanned or sorted, so identical concurrent searches share one scan
+    private final Map<SearchKey, PendingSearch> pendingSearches = new ConcurrentHashMap<>();
+    // Bumped whenever the view-all caches are dropped, so lists scanned before don't get cached
+    private final AtomicLong allShopsGeneration = new AtomicLong();
+    // View-all cache keys whose shops only changed in stock or space since they were cached
+    private final Set<String> staleAllShops = ConcurrentHashMap.newKeySet();
+
     private static QuickShopHandler instance;
 
     public QuickShopHandler() {
-        api = QuickShopAPI.getInstance();
+        this(QuickShopAPI.getInstance(), ShopSnapshot::of);
+    }
+
+    /**
+     * Creates a handler over the given QuickShop rather than the running one, e.g. stubbed for the load simulation
+     *
+     * @param api             Where shops are looked up
+     * @param snapshotFactory Takes the snapshot of a shop, called on the main thread
+     */
+    public QuickShopHandler(QuickShopAPI api, Function<Shop, ShopSnapshot> snapshotFactory) {
+        this.api = api;
+        this.snapshotFactory = snapshotFactory;
         instance = this;
+
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        metrics.registerCache("search_type_to_buy", searchedTypesToBuy);
+        metrics.registerCache("search_type_to_sell", searchedTypesToSell);
+        metrics.registerCache("search_name_to_buy", searchedStringsToBuy);
+        metrics.registerCache("search_name_to_sell", searchedStringsToSell);
+        metrics.registerCache("view_all", allShopsCache);
+        metrics.registerCache("view_all_shops", allShopsShopCache);
     }
 
     public void reload() {
-        this.searchedItemStacksToBuy.invalidateAll();
+        this.invalidateAllCaches();
+        this.buildIndex();
+    }
+
+    private void invalidateAllCaches() {
+        this.pendingSearches.values().forEach(pending -> pending.invalidated().set(true));
+        this.allShopsGeneration.incrementAndGet();
+        this.staleAllShops.clear();
+        this.searchedTypesToBuy.invalidateAll();
         this.searchedStringsToBuy.invalidateAll();
-        this.searchedItemStacksToSell.invalidateAll();
+        this.searchedTypesToSell.invalidateAll();
         this.searchedStringsToSell.invalidateAll();
         this.allShopsCache.invalidateAll();
         this.allShopsShopCache.invalidateAll();
     }
 
     /**
-     * Returns a cached list of ShopItem representing all shops for the given buy/sell mode.
-     * The returned list is pre-filtered to exclude blacklisted worlds and shops with zero stock/space.
-     * It does not perform per-player checks (permissions, hidden shops, warp locks) — caller must filter those.
+     * (Re)builds the material and display name indexes from every shop known to QuickShop.
+     * The snapshots are taken on the main thread over several ticks, see {@link BudgetedScanner}. The indexes are then
+     * built from them on the {@link SearchExecutor} and swapped in at once, so searches keep using the old indexes
+     * until then and never see a partial one. Does nothing but return the running rebuild if there is one.
+     *
+     * @return Completes on the main thread once the indexes have been rebuilt
      */
-    public List<ShopItem> getAllShopItems(boolean toBuy) {
-        final String key = toBuy ? "buy" : "sell";
-        List<ShopItem> cached = allShopsCache.getIfPresent(key);
-        if (cached != null) return cached;
+    public CompletableFuture<Void> buildIndex() {
+        if (!rebuildingIndex.isDone()) return rebuildingIndex;
+        List<Shop> allShops = new ArrayList<>(getAllShops());
+        List<ShopSnapshot> snapshots = new ArrayList<>(allShops.size());
+        Set<Long> changes = ConcurrentHashMap.newKeySet();
+        changedDuringRebuild = changes;
+        rebuildingIndex = BudgetedScanner.scan(allShops, shop -> {
+            if (!shop.isDeleted()) snapshots.add(snapshotFactory.apply(shop));
+        }).thenApplyAsync(ignored -> Indexes.build(allShops, snapshots), SearchExecutor.get())
+                .thenAcceptAsync(indexes -> this.swapIndexes(indexes, changes),
+                        runnable -> Bukkit.getScheduler().runTask(FindItemAddOn.getInstance(), runnable))
+                .whenComplete((ignored, throwable) -> {
+                    if (changedDuringRebuild == changes) changedDuringRebuild = null;
+                    if (throwable != null) {
+                        FindItemAddOn.getInstance().getLogger().severe("Failed to build the shop index: " + throwable.getMessage());
+                    }
+                });
+        return rebuildingIndex;
+    }
 
-        // Build list (ensure QuickShop internals are accessed on correct thread)
-        Util.ensureThread(true);
-        List<ShopItem> shopsFoundList = new ArrayList<>();
-        List<com.ghostchu.quickshop.api.shop.Shop> allShops = getAllShops();
-        for (com.ghostchu.quickshop.api.shop.Shop shopIterator : allShops) {
-            // skip blacklisted worlds
-            if (FindItemAddOn.getConfigProvider().getBlacklistedWorlds().contains(shopIterator.getLocation().getWorld())) {
-                continue;
-            }
-            if ((toBuy ? shopIterator.isSelling() : shopIterator.isBuying())) {
-                int stockOrSpace = (toBuy ? shopIterator.getRemainingStock() : shopIterator.getRemainingSpace());
-                if (stockOrSpace == 0) {
-                    continue;
-                }
-
-                // ensure shop owner has enough balance to sell the item (if selling)
-                OfflinePlayer shopOwner = Bukkit.getOfflinePlayer(shopIterator.getOwner().getUniqueId());
-                if (!toBuy && !FindItemAddOn.getInstance().getEconomy().has(shopOwner, shopIterator.getPrice())) {
-                    continue;
-                }
-
-                shopsFoundList.add(new ShopItem(
-                        shopIterator.getPrice(),
-                        QuickShopHandler.processStockOrSpace(stockOrSpace),
-                        shopIterator.getOwner().getUniqueIdOptional().orElse(new UUID(0, 0)),
-                        shopIterator.getLocation(),
-                        shopIterator.getItem(),
-                        toBuy,
-                        PlainTextComponentSerializer.plainText().serialize(shopIterator.getItem().displayName()).toLowerCase()
-                ));
+    /**
+     * Replaces the indexes with freshly built ones, and re-applies the shop changes made while they were built.
+     * Must be called on the main thread.
+     */
+    private void swapIndexes(Indexes indexes, Set<Long> changes) {
+        changedDuringRebuild = null;
+        Map<Long, Shop> oldLiveShops = liveShops;
+        liveShops = indexes.liveShops();
+        typeIndex = indexes.typeIndex();
+        nameIndex = indexes.nameIndex();
+        fuzzyIndex = indexes.fuzzyIndex();
+        suggestionIndex = indexes.suggestionIndex();
+
+        for (long shopId : changes) {
+            Shop shop = oldLiveShops.get(shopId);
+            if (shop != null && !shop.isDeleted()) {
+                // Re-snapshotted by the next refreshChangedStock
+                liveShops.put(shopId, shop);
+                changedStockShops.add(shopId);
+            } else {
+                removeShop(shopId);
             }
         }
+        // Results cached from the old indexes may be missing shops the rebuild picked up
+        this.invalidateAllCaches();
+        FindItemAddOn.getInstance().getLogger().info("Indexed " + typeIndex.size() + " shops");
+    }
 
-        // Sort alphabetically by item display name
-        shopsFoundList.sort(Comparator.comparing(ShopItem::itemName));
+    /**
+     * Re-takes the snapshot of every shop over several ticks, re-indexing those that changed.
+     * This is a safety net for stock and space changes no event reported, e.g. containers edited by other plugins.
+     * Does nothing if a refresh is still running.
+     */
+    public void refreshSnapshots() {
+        if (!refreshingSnapshots.isDone()) return;
+        refreshingSnapshots = BudgetedScanner.scan(new ArrayList<>(getAllShops()), shop -> {
+            if (!shop.isDeleted()) updateShop(shop);
+        });
+    }
 
-        allShopsCache.put(key, shopsFoundList);
-        return shopsFoundList;
+    /**
+     * Marks a shop's stock and space as changed, to be re-read on the next {@link #refreshChangedStock()}
+     *
+     * @param shop The shop whose container contents changed
+     */
+    public void markStockChanged(Shop shop) {
+        changedStockShops.add(shop.getShopId());
     }
 
-    public List<ShopItem> findItemBasedOnTypeFromAllShops(ItemStack item, boolean toBuy, Player searchingPlayer) {
-        if (toBuy) {
-            if (searchedItemStacksToBuy.getIfPresent(item) != null) {
-                return searchedItemStacksToBuy.getIfPresent(item);
+    /**
+     * Re-takes the snapshots of shops marked by {@link #markStockChanged(Shop)}, stopping once the
+     * per-tick scan budget is spent; the rest are picked up on the next call. Must be called on the main thread.
+     */
+    public void refreshChangedStock() {
+        long deadline = System.nanoTime() + Math.max(1, FindItemAddOn.getConfigProvider().SCAN_TICK_BUDGET_MS) * 1_000_000L;
+        Iterator<Long> iterator = changedStockShops.iterator();
+        while (iterator.hasNext() && System.nanoTime() < deadline) {
+            Shop shop = liveShops.get(iterator.next());
+            iterator.remove();
+            if (shop != null && !shop.isDeleted()) {
+                updateShop(shop);
             }
+        }
+    }
+
+    /**
+     * Re-indexes a single shop after it was created or changed, and drops any cached
+     * search results it could have appeared in before or after the change.
+     * Must be called on the main thread.
+     *
+     * @param shop The shop that changed
+     */
+    public void updateShop(Shop shop) {
+        long shopId = shop.getShopId();
+        ShopSnapshot snapshot = snapshotFactory.apply(shop);
+        Set<Long> changes = changedDuringRebuild;
+        if (changes != null) changes.add(shopId);
+        liveShops.put(shopId, shop);
+        ShopSnapshot oldSnapshot = nameIndex.getShop(shopId);
+        if (snapshot.equals(oldSnapshot)) return;
+        // Hoppers and purchases only ever change stock or space, which happens every tick on busy servers
+        boolean stockOnly = oldSnapshot != null && oldSnapshot.sameListingAs(snapshot);
+
+        String oldName = nameIndex.getName(shopId);
+        invalidateCachesFor(typeIndex.getMaterial(shopId), oldName, stockOnly);
+
+        typeIndex.remove(shopId);
+        nameIndex.remove(shopId);
+        if (oldName != null) fuzzyIndex.remove(oldName);
+        if (oldSnapshot != null) suggestionIndex.remove(oldSnapshot);
+        typeIndex.add(snapshot);
+        nameIndex.add(snapshot);
+        fuzzyIndex.add(snapshot.itemName());
+        suggestionIndex.add(snapshot);
+
+        invalidateCachesFor(snapshot.material(), snapshot.itemName(), stockOnly);
+    }
+
+    /**
+     * Removes a single shop from the index after it was deleted
+     *
+     * @param shop The deleted shop
+     */
+    public void removeShop(Shop shop) {
+        Set<Long> changes = changedDuringRebuild;
+        if (changes != null) changes.add(shop.getShopId());
+        removeShop(shop.getShopId());
+    }
+
+    private void removeShop(long shopId) {
+        String oldName = nameIndex.getName(shopId);
+        ShopSnapshot oldSnapshot = nameIndex.getShop(shopId);
+        invalidateCachesFor(typeIndex.getMaterial(shopId), oldName, false);
+
+        typeIndex.remove(shopId);
+        nameIndex.remove(shopId);
+        if (oldName != null) fuzzyIndex.remove(oldName);
+        if (oldSnapshot != null) suggestionIndex.remove(oldSnapshot);
+        liveShops.remove(shopId);
+    }
+
+    /**
+     * Drops the cached searches a shop could appear in, and stops running searches for them from caching their result.
+     * Searches for other materials and names are left alone.
+     *
+     * @param material  The material the shop trades, if indexed
+     * @param itemName  The normalised item name of the shop, if indexed
+     * @param stockOnly Whether only the shop's stock or space changed, in which case view-all is refreshed lazily
+     */
+    private void invalidateCachesFor(@Nullable Material material, @Nullable String itemName, boolean stockOnly) {
+        pendingSearches.forEach((searchKey, pending) -> {
+            if (searchKey.matches(material, itemName)) pending.invalidated().set(true);
+        });
+        if (material != null) {
+            searchedTypesToBuy.invalidate(material);
+            searchedTypesToSell.invalidate(material);
+        }
+        if (itemName != null) {
+            searchedStringsToBuy.asMap().keySet().removeIf(itemName::contains);
+            searchedStringsToSell.asMap().keySet().removeIf(itemName::contains);
+        }
+
+        if (stockOnly) {
+            // View-all lists every shop, so dropping it on every stock change would mean rescanning every shop each tick
+            staleAllShops.addAll(ALL_SHOPS_KEYS);
         } else {
-            if (searchedItemStacksToSell.getIfPresent(item) != null) {
-                return searchedItemStacksToSell.getIfPresent(item);
-            }
+            allShopsGeneration.incrementAndGet();
+            allShopsCache.invalidateAll();
+            allShopsShopCache.invalidateAll();
+            staleAllShops.clear();
         }
+    }
 
-        List<ShopItem> shopsFoundList = new ArrayList<>();
-        List<com.ghostchu.quickshop.api.shop.Shop> allShops = fetchAllShopsFromQS();
-        for (com.ghostchu.quickshop.api.shop.Shop shopIterator : allShops) {
-            if (shopIterator.playerAuthorize(searchingPlayer.getUniqueId(), BuiltInShopPermission.SEARCH)
-                    && (!FindItemAddOn.getConfigProvider().getBlacklistedWorlds().contains(shopIterator.getLocation().getWorld())
-                    && shopIterator.getItem().getType().equals(item.getType())
-                    && (toBuy ? shopIterator.isSelling() : shopIterator.isBuying()))
-            ) {
-                int stockOrSpace = (toBuy ? getRemainingStockOrSpaceFromShopCache(shopIterator, true) : getRemainingStockOrSpaceFromShopCache(shopIterator, false));
-                if (stockOrSpace == 0) {
-                    continue;
-                }
-
-                // ensure shop owner has enough balance to sell the item (if selling)
-                OfflinePlayer shopOwner = Bukkit.getOfflinePlayer(shopIterator.getOwner().getUniqueId());
-                if (!toBuy && !FindItemAddOn.getInstance().getEconomy().has(shopOwner, shopIterator.getPrice())) {
-                    continue;
-                }
-
-                shopsFoundList.add(new ShopItem(
-                        shopIterator.getPrice(),
-                        QuickShopHandler.processStockOrSpace(stockOrSpace),
-                        shopIterator.getOwner().getUniqueIdOptional().orElse(new UUID(0, 0)),
-                        shopIterator.getLocation(),
-                        shopIterator.getItem(),
-                        toBuy,
-                        PlainTextComponentSerializer.plainText().serialize(shopIterator.getItem().displayName()).toLowerCase()
-                ));
+    /**
+     * Looks up the shops trading a given material from the index, without scanning every shop
+     *
+     * @param material The material to look up
+     * @param toBuy    Whether the player is buying (selling shops) or selling (buying shops)
+     * @return The matching shops
+     */
+    public Collection<ShopSnapshot> getShopsByType(Material material, boolean toBuy) {
+        return typeIndex.getShops(material, toBuy);
+    }
+
+    /**
+     * Returns a live, read-only view of the snapshot of every indexed shop, safe to iterate on any thread
+     */
+    public Collection<ShopSnapshot> getShopSnapshots() {
+        return nameIndex.getShops();
+    }
+
+    /**
+     * Returns the snapshots of the indexed shops a player owns, safe to call on any thread
+     *
+     * @param owner The owner
+     * @return The owner's shops, in no particular order
+     */
+    public List<ShopSnapshot> getShopSnapshotsFor(UUID owner) {
+        List<ShopSnapshot> ownShops = new ArrayList<>();
+        for (ShopSnapshot snapshot : nameIndex.getShops()) {
+            if (owner.equals(snapshot.owner())) ownShops.add(snapshot);
+        }
+        return ownShops;
+    }
+
+    /**
+     * Returns a cached, read-only list of ShopItem representing all shops for the given buy/sell mode, sorted by item name.
+     * The returned list is pre-filtered to exclude blacklisted worlds and shops with zero stock/space.
+     * It does not perform per-player checks (permissions, hidden shops, warp locks) — caller must filter those.
+     * <p>
+     * When the list isn't cached it is rebuilt from the shop snapshots on the {@link SearchExecutor}. If only stock or
+     * space changed since it was cached, the cached list is returned and rebuilt in the background for the next request.
+     */
+    public CompletableFuture<List<ShopItem>> getAllShopItems(boolean toBuy) {
+        final String key = toBuy ? "buy" : "sell";
+        ShopResults cached = allShopsCache.getIfPresent(key);
+        if (cached != null) {
+            if (staleAllShops.remove(key)) scanAllShopItems(key, toBuy);
+            return CompletableFuture.completedFuture(cached.byName());
+        }
+        return scanAllShopItems(key, toBuy).thenApply(ShopResults::byName);
+    }
+
+    private CompletableFuture<ShopResults> scanAllShopItems(String key, boolean toBuy) {
+        long generation = allShopsGeneration.get();
+        return CompletableFuture.supplyAsync(() -> {
+            long scanStart = System.nanoTime();
+            List<ShopItem> shopsFound = scanShops(nameIndex.getShops(), toBuy, false);
+            SearchMetrics.getInstance().SCAN.observeSince(scanStart);
+            SearchMetrics.getInstance().RESULT_SIZE.observe(shopsFound.size());
+
+            // Sort alphabetically by item display name
+            long sortStart = System.nanoTime();
+            ShopResults results = new ShopResults(shopsFound);
+            SearchMetrics.getInstance().SORT.observeSince(sortStart);
+            if (allShopsGeneration.get() == generation) allShopsCache.put(key, results);
+            return results;
+        }, SearchExecutor.get());
+    }
+
+    /**
+     * Finds every shop trading the given item type, regardless of who is searching.
+     * The result is cached, read-only and shared between players - use {@link #filterForPlayer(List, Player)} before showing it.
+     */
+    public List<ShopItem> findItemBasedOnTypeFromAllShops(Material material, boolean toBuy) {
+        return handleShopSorting(getOrScan(toBuy ? searchedTypesToBuy : searchedTypesToSell, material,
+                () -> getShopsByType(material, toBuy), toBuy));
+    }
+
+    /**
+     * Finds every shop whose item display name contains the matcher, regardless of who is searching.
+     * The result is cached, read-only and shared between players - use {@link #filterForPlayer(List, Player)} before showing it.
+     */
+    public List<ShopItem> findItemBasedOnDisplayNameFromAllShops(String matcher, boolean toBuy) {
+        return handleShopSorting(getOrScan(toBuy ? searchedStringsToBuy : searchedStringsToSell, ShopNameIndex.normaliseQuery(matcher),
+                () -> nameIndex.search(matcher), toBuy));
+    }
+
+    /**
+     * Searches the shops trading the given item type on behalf of a player. The first page is collected
+     * into a bounded top-K heap while the matches are scanned, so it can be shown as soon as the scan is done,
+     * before the full result has been sorted, cached and filtered for the player.
+     *
+     * @param material The item type to look for
+     * @param toBuy    Whether the player is buying (selling shops) or selling (buying shops)
+     * @param player   The player searching
+     * @param pageSize The number of results shown on the first page
+     * @return The first page and the full result
+     */
+    public StreamedResults searchByType(Material material, boolean toBuy, Player player, int pageSize) {
+        return streamSearch(toBuy ? searchedTypesToBuy : searchedTypesToSell, material,
+                () -> getShopsByType(material, toBuy), toBuy, player, pageSize);
+    }
+
+    /**
+     * Searches the shops whose item display name contains the matcher on behalf of a player.
+     *
+     * @see #searchByType(Material, boolean, Player, int)
+     */
+    public StreamedResults searchByDisplayName(String matcher, boolean toBuy, Player player, int pageSize) {
+        return streamSearch(toBuy ? searchedStringsToBuy : searchedStringsToSell, ShopNameIndex.normaliseQuery(matcher),
+                () -> nameIndex.search(matcher), toBuy, player, pageSize);
+    }
+
+    /**
+     * Suggests item material or display names close to a query that found nothing, e.g. "diamon pickaxe"
+     *
+     * @param matcher The raw search query
+     * @param limit   The maximum number of suggestions
+     * @return The suggestions, closest first, in a form that can be searched for again
+     */
+    public List<String> findClosestTerms(String matcher, int limit) {
+        return fuzzyIndex.findClosest(matcher, limit).stream()
+                .map(term -> term.replace(' ', '_'))
+                .toList();
+    }
+
+    /**
+     * Completes a partially typed search from the items currently in stock
+     *
+     * @param input The typed search
+     * @param toBuy Whether the player is buying (selling shops) or selling (buying shops)
+     * @param limit The maximum number of suggestions
+     * @return The suggestions, in alphabetical order
+     */
+    public List<String> suggestSearches(String input, boolean toBuy, int limit) {
+        return suggestionIndex.suggest(input, toBuy, limit);
+    }
+
+    private <K> ShopResults getOrScan(Cache<K, ShopResults> cache, K key, Supplier<Collection<ShopSnapshot>> candidates, boolean toBuy) {
+        return search(cache, key, candidates, toBuy, null).pending().results().join();
+    }
+
+    /**
+     * Looks up a search in the cache, joins an identical search that is still running, or starts a new one.
+     * A new search is scanned on the calling thread and sorted on the {@link SearchExecutor}.
+     *
+     * @param onMatch Called with each match as a new search scans it, or null
+     */
+    private <K> StartedSearch search(Cache<K, ShopResults> cache, K key, Supplier<Collection<ShopSnapshot>> candidates, boolean toBuy,
+                                     @Nullable Consumer<ShopItem> onMatch) {
+        ShopResults cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return new StartedSearch(PendingSearch.completed(cached), false);
+        }
+
+        SearchKey searchKey = new SearchKey(cache, key);
+        PendingSearch pending = new PendingSearch(new CompletableFuture<>(), new CompletableFuture<>(), new AtomicBoolean());
+        PendingSearch existing = pendingSearches.putIfAbsent(searchKey, pending);
+        if (existing != null) {
+            SearchMetrics.getInstance().COALESCED_SEARCHES.increment();
+            return new StartedSearch(existing, false);
+        }
+
+        try {
+            long scanStart = System.nanoTime();
+            List<ShopItem> shopsFound = scanShops(candidates.get(), toBuy, FindItemAddOn.getConfigProvider().SEARCH_LOADED_SHOPS_ONLY, onMatch);
+            SearchMetrics.getInstance().SCAN.observeSince(scanStart);
+            SearchMetrics.getInstance().RESULT_SIZE.observe(shopsFound.size());
+            pending.shopsFound().complete(shopsFound);
+        } catch (Throwable throwable) {
+            pendingSearches.remove(searchKey, pending);
+            pending.shopsFound().completeExceptionally(throwable);
+            pending.results().completeExceptionally(throwable);
+            throw throwable;
+        }
+
+        CompletableFuture.supplyAsync(() -> {
+            long sortStart = System.nanoTime();
+            ShopResults results = new ShopResults(pending.shopsFound().join());
+            SearchMetrics.getInstance().SORT.observeSince(sortStart);
+            return results;
+        }, SearchExecutor.get())
+                .whenComplete((results, throwable) -> {
+                    // Cache before leaving the pending searches, so there is no window where neither has the result
+                    if (results != null && !pending.invalidated().get()) {
+                        cache.put(key, results);
+                        // Invalidated between the check and the put, after the invalidation's own cache removal
+                        if (pending.invalidated().get()) cache.asMap().remove(key, results);
+                    }
+                    pendingSearches.remove(searchKey, pending);
+                    if (throwable != null) {
+                        pending.results().completeExceptionally(throwable);
+                    } else {
+                        pending.results().complete(results);
+                    }
+                });
+        return new StartedSearch(pending, true);
+    }
+
+    private <K> StreamedResults streamSearch(Cache<K, ShopResults> cache, K key, Supplier<Collection<ShopSnapshot>> candidates,
+                                             boolean toBuy, Player player, int pageSize) {
+        int sortingMethod = getSortingMethod();
+        Comparator<ShopItem> comparator = ShopResults.comparator(sortingMethod);
+        PlayerWarpsUtil playerWarpsUtil = new PlayerWarpsUtil();
+        TopKCollector<ShopItem> firstPage = comparator == null ? null : new TopKCollector<>(comparator, pageSize);
+        Consumer<ShopItem> collectFirstPage = firstPage == null ? null : shopItem -> {
+            // Only pay for the visibility checks when the shop would actually make the first page
+            if (firstPage.wouldAccept(shopItem) && isVisibleTo(shopItem, player, playerWarpsUtil)) {
+                firstPage.add(shopItem);
             }
+        };
+
+        StartedSearch started = search(cache, key, candidates, toBuy, collectFirstPage);
+        PendingSearch pending = started.pending();
+        // Nothing to gain from streaming when the sorted result is already there, or when there is no order to keep
+        if (pending.results().isDone() || firstPage == null) {
+            return StreamedResults.completed(filterForPlayer(pending.results().join().view(sortingMethod), player), pageSize);
         }
 
-        if (toBuy) {
-            this.searchedItemStacksToBuy.put(item, shopsFoundList);
-        } else {
-            this.searchedItemStacksToSell.put(item, shopsFoundList);
+        // Joined a search someone else is scanning, so collect from its matches once they're in
+        if (!started.scanned()) {
+            pending.shopsFound().join().forEach(collectFirstPage);
         }
-        return handleShopSorting(toBuy, shopsFoundList);
+
+        CompletableFuture<List<ShopItem>> allResults = pending.results()
+                .thenApplyAsync(results -> filterForPlayer(results.view(sortingMethod), player), SearchExecutor.get());
+        return new StreamedResults(firstPage.toSortedList(), allResults);
+    }
+
+    private List<ShopItem> scanShops(Collection<ShopSnapshot> candidates, boolean toBuy, boolean loadedOnly) {
+        return scanShops(candidates, toBuy, loadedOnly, null);
     }
 
-    public List<ShopItem> findItemBasedOnDisplayNameFromAllShops(String matcher, boolean toBuy, Player searchingPlayer) {
-        if (toBuy) {
-            if (searchedStringsToBuy.getIfPresent(matcher) != null) {
-                return searchedStringsToBuy.getIfPresent(matcher);
+    /**
+     * @param onMatch Called with each match as it is found, or null
+     */
+    private List<ShopItem> scanShops(Collection<ShopSnapshot> candidates, boolean toBuy, boolean loadedOnly,
+                                     @Nullable Consumer<ShopItem> onMatch) {
+        Map<Long, Shop> liveShops = this.liveShops;
+        LongPredicate isLoaded = loadedOnly ? shopId -> {
+            Shop shop = liveShops.get(shopId);
+            return shop != null && shop.isLoaded();
+        } : null;
+        return scanShops(candidates, toBuy, FindItemAddOn.getConfigProvider().getBlacklistedWorlds(), isLoaded, onMatch);
+    }
+
+    /**
+     * Matches index candidates against a search and converts them to shop items.
+     * Only reads what it is given, so the benchmarks can run the same loop outside a server.
+     *
+     * @param candidates        The snapshots from an index lookup
+     * @param toBuy             Whether the search is to buy (selling shops) or to sell (buying shops)
+     * @param blacklistedWorlds The worlds whose shops are left out
+     * @param isLoaded          Whether a shop, by id, is loaded; or null to include unloaded shops too
+     * @param onMatch           Called with each match as it is found, or null
+     * @return The matched shops, in candidate order
+     */
+    public static List<ShopItem> scanShops(Collection<ShopSnapshot> candidates, boolean toBuy, Collection<World> blacklistedWorlds,
+                                           @Nullable LongPredicate isLoaded, @Nullable Consumer<ShopItem> onMatch) {
+        List<ShopItem> shopsFoundList = new ArrayList<>();
+        for (ShopSnapshot snapshot : candidates) {
+            if (!(toBuy ? snapshot.selling() : snapshot.buying())
+                    || blacklistedWorlds.contains(snapshot.location().getWorld())) {
+                continue;
             }
-        } else {
-            if (searchedStringsToSell.getIfPresent(matcher) != null) {
-                return searchedStringsToSell.getIfPresent(matcher);
+
+            if (isLoaded != null && !isLoaded.test(snapshot.shopId())) {
+                continue;
             }
+
+            int stockOrSpace = snapshot.remainingStockOrSpace(toBuy);
+            if (stockOrSpace == 0) {
+                continue;
+            }
+
+            ShopItem shopItem = toShopItem(snapshot, stockOrSpace, toBuy);
+            shopsFoundList.add(shopItem);
+            if (onMatch != null) onMatch.accept(shopItem);
         }
+        return shopsFoundList;
+    }
 
-        List<ShopItem> shopsFoundList = new ArrayList<>();
-        List<com.ghostchu.quickshop.api.shop.Shop> allShops = fetchAllShopsFromQS();
-        for (com.ghostchu.quickshop.api.shop.Shop shopIterator : allShops) {
-            if (shopIterator.playerAuthorize(searchingPlayer.getUniqueId(), BuiltInShopPermission.SEARCH)
-                    && !FindItemAddOn.getConfigProvider().getBlacklistedWorlds().contains(shopIterator.getLocation().getWorld())
-                    && PlainTextComponentSerializer.plainText().serialize(shopIterator.getItem().displayName()).toLowerCase().contains(matcher.replace("_", " ").toLowerCase())
-                    && (toBuy ? shopIterator.isSelling() : shopIterator.isBuying())
-            ) {
-                int stockOrSpace = (toBuy ? getRemainingStockOrSpaceFromShopCache(shopIterator, true) : getRemainingStockOrSpaceFromShopCache(shopIterator, false));
-                if (stockOrSpace == 0) {
-                    continue;
-                }
-
-                // ensure shop owner has enough balance to sell the item (if selling)
-                OfflinePlayer shopOwner = Bukkit.getOfflinePlayer(shopIterator.getOwner().getUniqueId());
-                if (!toBuy && !FindItemAddOn.getInstance().getEconomy().has(shopOwner, shopIterator.getPrice())) {
-                    continue;
-                }
-
-                shopsFoundList.add(new ShopItem(
-                        shopIterator.getPrice(),
-                        QuickShopHandler.processStockOrSpace(stockOrSpace),
-                        shopIterator.getOwner().getUniqueIdOptional().orElse(new UUID(0, 0)),
-                        shopIterator.getLocation(),
-                        shopIterator.getItem(),
-                        toBuy,
-                        PlainTextComponentSerializer.plainText().serialize(shopIterator.getItem().displayName()).toLowerCase()
-                ));
+    /**
+     * Narrows a shared search result down to the shops a player is allowed to see:
+     * shops they have search permission for, that aren't hidden by their owner and whose nearest warp isn't locked.
+     * Buying shops are also left out when their owner can't afford the price. That is checked here rather than
+     * when scanning, as the shared results are cached for longer than balances are trusted.
+     * The order of the given list is preserved.
+     *
+     * @param shopItems The shared search result
+     * @param player    The player viewing the result
+     * @return A new list with the visible shops
+     */
+    public List<ShopItem> filterForPlayer(List<ShopItem> shopItems, Player player) {
+        long start = System.nanoTime();
+        List<ShopItem> visibleShops = new ArrayList<>(shopItems.size());
+        PlayerWarpsUtil playerWarpsUtil = new PlayerWarpsUtil();
+        for (ShopItem shopItem : shopItems) {
+            if (isVisibleTo(shopItem, player, playerWarpsUtil)) {
+                visibleShops.add(shopItem);
             }
         }
+        SearchMetrics.getInstance().FILTER.observeSince(start);
+        return visibleShops;
+    }
 
-        if (toBuy) {
-            this.searchedStringsToBuy.put(matcher, shopsFoundList);
-        } else {
-            this.searchedStringsToSell.put(matcher, shopsFoundList);
+    private boolean isVisibleTo(ShopItem shopItem, Player player, PlayerWarpsUtil playerWarpsUtil) {
+        Shop shop = liveShops.get(shopItem.shopId());
+        if (shop == null || !shop.playerAuthorize(player.getUniqueId(), BuiltInShopPermission.SEARCH)) {
+            return false;
         }
-        return handleShopSorting(toBuy, shopsFoundList);
+
+        if (HiddenShopsCache.getInstance().isShopHidden(shopItem.shopOwner(), shopItem.shopLocation())) {
+            return false;
+        }
+
+        // ensure shop owner has enough balance to buy the item (if the player is selling)
+        if (!shopItem.toBuy() && !OwnerBalanceCache.getInstance().has(shopItem.shopOwner(), shopItem.shopPrice())) {
+            return false;
+        }
+
+        Warp nearestWarp = playerWarpsUtil.findNearestWarp(shopItem.shopLocation(), shopItem.shopOwner());
+        return nearestWarp == null || !nearestWarp.isWarpLocked();
     }
 
+    /**
+     * Returns a read-only view of the results in the configured shop sorting order
+     */
     @NotNull
-    static List<ShopItem> handleShopSorting(boolean toBuy, List<ShopItem> shopsFoundList) {
-        if (!shopsFoundList.isEmpty()) {
-            int sortingMethod = 2;
-            try {
-                sortingMethod = FindItemAddOn.getConfigProvider().SHOP_SORTING_METHOD;
-            } catch (Exception ignored) {
-            }
-            return QuickShopHandler.sortShops(sortingMethod, shopsFoundList, toBuy);
-        }
-        return shopsFoundList;
+    static List<ShopItem> handleShopSorting(ShopResults results) {
+        return results.view(getSortingMethod());
     }
 
-    private List<com.ghostchu.quickshop.api.shop.Shop> fetchAllShopsFromQS() {
-        List<com.ghostchu.quickshop.api.shop.Shop> allShops;
-        if (FindItemAddOn.getConfigProvider().SEARCH_LOADED_SHOPS_ONLY) {
-            allShops = new ArrayList<>(api.getShopManager().getLoadedShops());
-        } else {
-            allShops = getAllShops();
+    private static int getSortingMethod() {
+        int sortingMethod = 2;
+        try {
+            sortingMethod = FindItemAddOn.getConfigProvider().SHOP_SORTING_METHOD;
+        } catch (Exception ignored) {
         }
-        return allShops;
+        return sortingMethod;
     }
 
     public List<Shop> getAllShopsFor(Player player) {
@@ -267,6 +702,11 @@ public class QuickShopHandler {
         return api.getShopManager().getShopIncludeAttached(loc);
     }
 
+    public Collection<Shop> getShopsInChunk(Chunk chunk) {
+        Map<Location, Shop> shops = api.getShopManager().getShops(chunk);
+        return shops == null ? List.of() : shops.values();
+    }
+
     public boolean isShopOwnerCommandRunner(Player player, com.ghostchu.quickshop.api.shop.Shop shop) {
         return shop.getOwner().getUniqueId() == player.getUniqueId();
     }
@@ -279,60 +719,48 @@ public class QuickShopHandler {
         return api.getPlayerFinder().name2Uuid(playerName);
     }
 
-    private int getRemainingStockOrSpaceFromShopCache(com.ghostchu.quickshop.api.shop.Shop shop, boolean fetchRemainingStock) {
-        Util.ensureThread(true);
-        return (fetchRemainingStock ? shop.getRemainingStock() : shop.getRemainingSpace());
-    }
-
     /**
      * Returns cached list of QuickShop Shop objects pre-filtered for buy/sell mode.
      * Caller can perform per-player checks (playerAuthorize, hidden shops, warp locks) as needed.
+     * <p>
+     * When the list isn't cached it is rebuilt from the shop snapshots on the {@link SearchExecutor}.
      */
-    public List<com.ghostchu.quickshop.api.shop.Shop> getAllShopsFiltered(boolean toBuy) {
+    public CompletableFuture<List<com.ghostchu.quickshop.api.shop.Shop>> getAllShopsFiltered(boolean toBuy) {
         final String key = toBuy ? "buy-shops" : "sell-shops";
         List<com.ghostchu.quickshop.api.shop.Shop> cached = allShopsShopCache.getIfPresent(key);
-        if (cached != null) return cached;
-
-        // Build list (ensure QuickShop internals accessed on correct thread)
-        Util.ensureThread(true);
-        List<com.ghostchu.quickshop.api.shop.Shop> shops = new ArrayList<>();
-        List<com.ghostchu.quickshop.api.shop.Shop> allShops = getAllShops();
-        for (com.ghostchu.quickshop.api.shop.Shop shopIterator : allShops) {
-            if (FindItemAddOn.getConfigProvider().getBlacklistedWorlds().contains(shopIterator.getLocation().getWorld())) {
-                continue;
-            }
-            if ((toBuy ? shopIterator.isSelling() : shopIterator.isBuying())) {
-                int stockOrSpace = (toBuy ? shopIterator.getRemainingStock() : shopIterator.getRemainingSpace());
-                if (stockOrSpace == 0) continue;
-
-                // ensure shop owner has enough balance to sell the item (if selling)
-                OfflinePlayer shopOwner = Bukkit.getOfflinePlayer(shopIterator.getOwner().getUniqueId());
-                if (!toBuy && !FindItemAddOn.getInstance().getEconomy().has(shopOwner, shopIterator.getPrice())) continue;
+        if (cached != null) {
+            if (staleAllShops.remove(key)) scanAllShopsFiltered(key, toBuy);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return scanAllShopsFiltered(key, toBuy);
+    }
 
-                shops.add(shopIterator);
+    private CompletableFuture<List<com.ghostchu.quickshop.api.shop.Shop>> scanAllShopsFiltered(String key, boolean toBuy) {
+        long generation = allShopsGeneration.get();
+        return CompletableFuture.supplyAsync(() -> {
+            List<com.ghostchu.quickshop.api.shop.Shop> shops = new ArrayList<>();
+            for (ShopItem shopItem : scanShops(nameIndex.getShops(), toBuy, false)) {
+                Shop shop = liveShops.get(shopItem.shopId());
+                if (shop != null) shops.add(shop);
             }
-        }
 
-        allShopsShopCache.put(key, shops);
-        return shops;
+            List<com.ghostchu.quickshop.api.shop.Shop> result = Collections.unmodifiableList(shops);
+            if (allShopsGeneration.get() == generation) allShopsShopCache.put(key, result);
+            return result;
+        }, SearchExecutor.get());
     }
 
-    static List<ShopItem> sortShops(int sortingMethod, List<ShopItem> shopsFoundList, boolean toBuy) {
-        switch (sortingMethod) {
-            // Random
-            case 1 -> Collections.shuffle(shopsFoundList);
-            // Based on prices (lower to higher)
-            case 2 -> shopsFoundList.sort(Comparator.comparing(ShopItem::shopPrice));
-            // Based on stocks (higher to lower)
-            case 3 -> {
-                shopsFoundList.sort(Comparator.comparing(ShopItem::remainingStockOrSpace));
-                Collections.reverse(shopsFoundList);
-            }
-            default -> {
-                shopsFoundList.sort(Comparator.comparing(ShopItem::shopPrice));
-            }
-        }
-        return shopsFoundList;
+    private static ShopItem toShopItem(ShopSnapshot snapshot, int stockOrSpace, boolean toBuy) {
+        return new ShopItem(
+                snapshot.price(),
+                QuickShopHandler.processStockOrSpace(stockOrSpace),
+                snapshot.owner() == null ? ShopItem.NO_OWNER : snapshot.owner(),
+                snapshot.location(),
+                snapshot.item(),
+                toBuy,
+                snapshot.itemName(),
+                snapshot.shopId()
+        );
     }
 
     static int processStockOrSpace(int stockOrSpace) {
@@ -341,6 +769,61 @@ public class QuickShopHandler {
         return stockOrSpace;
     }
 
+    /**
+     * A full set of indexes, built off the main thread and swapped in together
+     */
+    private record Indexes(Map<Long, Shop> liveShops, ShopTypeIndex typeIndex, ShopNameIndex nameIndex,
+                           FuzzyNameIndex fuzzyIndex, ShopSuggestionIndex suggestionIndex) {
+
+        static Indexes build(List<Shop> allShops, List<ShopSnapshot> snapshots) {
+            Map<Long, Shop> liveShops = new ConcurrentHashMap<>();
+            allShops.forEach(shop -> liveShops.put(shop.getShopId(), shop));
+            Indexes indexes = new Indexes(liveShops, new ShopTypeIndex(), new ShopNameIndex(), new FuzzyNameIndex(), new ShopSuggestionIndex());
+            indexes.typeIndex().rebuild(snapshots);
+            indexes.nameIndex().rebuild(snapshots);
+            indexes.fuzzyIndex().rebuild(snapshots);
+            indexes.suggestionIndex().rebuild(snapshots);
+            return indexes;
+        }
+    }
+
+    /**
+     * Identifies a search by the cache its result goes into (which encodes the search type and mode) and its key
+     */
+    private record SearchKey(Cache<?, ShopResults> cache, Object key) {
+
+        /**
+         * Returns whether a shop trading the given material or item name could appear in this search's result
+         */
+        boolean matches(@Nullable Material material, @Nullable String itemName) {
+            if (key instanceof Material type) return type == material;
+            return key instanceof String query && itemName != null && itemName.contains(query);
+        }
+    }
+
+    /**
+     * @param pending The search
+     * @param scanned Whether the search was scanned by this request, rather than cached or joined
+     */
+    private record StartedSearch(PendingSearch pending, boolean scanned) {
+    }
+
+    /**
+     * A search shared by every concurrent request for it
+     *
+     * @param shopsFound  Completes with the unsorted matches once the scan is done
+     * @param results     Completes with the sorted results
+     * @param invalidated Set when a shop the search could match changed while it ran, so its result isn't cached
+     */
+    private record PendingSearch(CompletableFuture<List<ShopItem>> shopsFound, CompletableFuture<ShopResults> results,
+                                 AtomicBoolean invalidated) {
+
+        static PendingSearch completed(ShopResults results) {
+            return new PendingSearch(CompletableFuture.completedFuture(results.byName()), CompletableFuture.completedFuture(results),
+                    new AtomicBoolean());
+        }
+    }
+
     public static QuickShopHandler getInstance() {
         return instance;
     }
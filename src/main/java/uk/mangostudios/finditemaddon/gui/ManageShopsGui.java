@@ -7,6 +7,7 @@ import dev.triumphteam.gui.guis.PaginatedGui;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextDecoration;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
@@ -16,6 +17,8 @@ import uk.mangostudios.finditemaddon.cache.HiddenShopsCache;
 import uk.mangostudios.finditemaddon.external.QuickShopHandler;
 import uk.mangostudios.finditemaddon.util.Colourify;
 import uk.mangostudios.finditemaddon.util.ItemUtil;
+import uk.mangostudios.finditemaddon.util.LoreTemplate;
+import uk.mangostudios.finditemaddon.util.SearchExecutor;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,7 +34,13 @@ public class ManageShopsGui {
             .disableAllInteractions()
             .create();
 
-    public ManageShopsGui(Player player) {
+    /**
+     * Builds the GUI from the indexed shop snapshots, so it can be built off the main thread
+     *
+     * @param player         The player managing their shops
+     * @param playerLocation Where the player was when they opened the GUI, read on the main thread
+     */
+    public ManageShopsGui(Player player, Location playerLocation) {
         // Add the buttons
         gui.setItem(6, 1,
                 ItemBuilder.from(ItemUtil.get(FindItemAddOn.getConfigProvider().SHOP_GUI_BACK_BUTTON_MATERIAL))
@@ -55,51 +64,37 @@ public class ManageShopsGui {
 
         // Add the items
         Map<GuiItem, Integer> items = new HashMap<>(); // GuiItem, Distance
-        QuickShopHandler.getInstance().getAllShopsFor(player).forEach(shop -> {
-            ItemStack item = shop.getItem().clone();
-            Location shopLocation = shop.getLocation();
-            List<String> lore = new ArrayList<>();
+        QuickShopHandler.getInstance().getShopSnapshotsFor(player.getUniqueId()).forEach(shop -> {
+            ItemStack item = shop.item().clone();
+            Location shopLocation = shop.location();
             boolean isHidden = HiddenShopsCache.getInstance().isShopHidden(player, shopLocation);
 
             // Calculate the distance from the player to the shop
             int distance = 100000;
-            if (player.getWorld().equals(shopLocation.getWorld())) {
-                distance = (int) player.getLocation().distance(shopLocation);
+            if (playerLocation.getWorld().equals(shopLocation.getWorld())) {
+                distance = (int) playerLocation.distance(shopLocation);
             }
 
             // Add the lore
             String replacement = distance == 100000 ? "Other World" : String.valueOf(distance);
-            if (isHidden) {
-                for (String line : FindItemAddOn.getConfigProvider().MANAGE_SHOP_GUI_HIDDEN_ITEM_LORE) {
-                    lore.add(line
-                            .replace("<item>", PlainTextComponentSerializer.plainText().serialize(item.clone().displayName()))
-                            .replace("<location>",
-                                    "X: " + shop.getLocation().getBlockX()
-                                            + ", Y: " + shop.getLocation().getBlockY()
-                                            + ", Z: " + shop.getLocation().getBlockZ())
-                            .replace("<world>", shop.getLocation().getWorld().getName())
-                            .replace("<distance>", replacement)
-                    );
-                }
-            } else {
-                for (String line : FindItemAddOn.getConfigProvider().MANAGE_SHOP_GUI_SHOWN_ITEM_LORE) {
-                    lore.add(line
-                            .replace("<item>", PlainTextComponentSerializer.plainText().serialize(item.clone().displayName()))
-                            .replace("<location>",
-                                    "X: " + shop.getLocation().getBlockX()
-                                            + ", Y: " + shop.getLocation().getBlockY()
-                                            + ", Z: " + shop.getLocation().getBlockZ())
-                            .replace("<world>", shop.getLocation().getWorld().getName())
-                            .replace("<distance>", replacement)
-                    );
-                }
-            }
+            LoreTemplate loreTemplate = isHidden
+                    ? FindItemAddOn.getConfigProvider().MANAGE_SHOP_GUI_HIDDEN_ITEM_LORE_TEMPLATE
+                    : FindItemAddOn.getConfigProvider().MANAGE_SHOP_GUI_SHOWN_ITEM_LORE_TEMPLATE;
+            List<Component> lore = loreTemplate.render(placeholder -> switch (placeholder) {
+                case "item" -> PlainTextComponentSerializer.plainText().serialize(item.displayName());
+                case "location" -> "X: " + shopLocation.getBlockX()
+                        + ", Y: " + shopLocation.getBlockY()
+                        + ", Z: " + shopLocation.getBlockZ();
+                case "world" -> shopLocation.getWorld().getName();
+                case "distance" -> replacement;
+                default -> "";
+            });
 
 
             // Add the item to the GUI
             items.put(ItemBuilder.from(item.clone())
                     .name(item.clone().displayName().decoration(TextDecoration.ITALIC, false))
-                    .lore(Colourify.colour(lore))
+                    .lore(lore)
                     .asGuiItem(inventoryClickEvent -> {
                         if (isHidden) {
                             HiddenShopsCache.getInstance().unhideShop(player, shopLocation);
@@ -120,7 +115,23 @@ public class ManageShopsGui {
         }
     }
 
+    /**
+     * Reads the player's location on the main thread, builds the GUI off it, then opens it back on the main thread.
+     * Can be called from any thread.
+     *
+     * @param player The player to open the GUI for
+     */
     public static void open(Player player) {
-        CompletableFuture.supplyAsync(() -> new ManageShopsGui(player)).thenAccept(gui -> gui.gui.open(player));
+        Bukkit.getScheduler().runTask(FindItemAddOn.getInstance(), () -> {
+            Location playerLocation = player.getLocation();
+            CompletableFuture.supplyAsync(() -> new ManageShopsGui(player, playerLocation), SearchExecutor.get())
+                    .thenAccept(gui -> Bukkit.getScheduler().runTask(FindItemAddOn.getInstance(), () -> {
+                        if (player.isOnline()) gui.gui.open(player);
+                    }))
+                    .exceptionally(throwable -> {
+                        FindItemAddOn.getInstance().getLogger().severe("Failed to build the manage shops GUI: " + throwable.getMessage());
+                        return null;
+                    });
+        });
     }
 }
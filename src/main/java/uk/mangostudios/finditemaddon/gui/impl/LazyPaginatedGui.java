@@ -0,0 +1,145 @@
+package uk.mangostudios.finditemaddon.gui.impl;
+
+import dev.triumphteam.gui.builder.item.ItemBuilder;
+import dev.triumphteam.gui.guis.Gui;
+import dev.triumphteam.gui.guis.GuiItem;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.metrics.SearchMetrics;
+import uk.mangostudios.finditemaddon.util.Colourify;
+import uk.mangostudios.finditemaddon.util.ItemUtil;
+import uk.mangostudios.finditemaddon.util.SearchExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A six-row paginated GUI which only renders the page being viewed.
+ * <p>
+ * Items are built from the source list when their page is shown, and the previous
+ * page's items are dropped, so the work and memory per viewer are bounded by the page size.
+ *
+ * @param <T> The type of the entries being listed
+ */
+public class LazyPaginatedGui<T> {
+
+    private static final int FIRST_ITEM_SLOT = 9;
+    public static final int PAGE_SIZE = 36;
+
+    private final Gui gui;
+    private final Function<T, GuiItem> renderer;
+    private volatile List<T> source;
+    private volatile int requestedPage = 0;
+
+    public LazyPaginatedGui(Component title, List<T> source, Function<T, GuiItem> renderer) {
+        this.source = source;
+        this.renderer = renderer;
+        this.gui = Gui.gui()
+                .title(title)
+                .rows(6)
+                .disableAllInteractions()
+                .create();
+
+        // Add the buttons
+        gui.setItem(6, 1,
+                ItemBuilder.from(ItemUtil.get(FindItemAddOn.getConfigProvider().SHOP_GUI_BACK_BUTTON_MATERIAL))
+                        .name(Colourify.colour(FindItemAddOn.getConfigProvider().SHOP_GUI_BACK_BUTTON_TEXT))
+                        .asGuiItem(event -> this.previous()));
+        gui.setItem(6, 9,
+                ItemBuilder.from(ItemUtil.get(FindItemAddOn.getConfigProvider().SHOP_GUI_NEXT_BUTTON_MATERIAL))
+                        .name(Colourify.colour(FindItemAddOn.getConfigProvider().SHOP_GUI_NEXT_BUTTON_TEXT))
+                        .asGuiItem(event -> this.next()));
+        gui.setItem(6, 5,
+                ItemBuilder.from(ItemUtil.get(FindItemAddOn.getConfigProvider().SHOP_GUI_CLOSE_BUTTON_MATERIAL))
+                        .name(Colourify.colour(FindItemAddOn.getConfigProvider().SHOP_GUI_CLOSE_BUTTON_TEXT))
+                        .asGuiItem(event -> gui.close(event.getWhoClicked())));
+
+        gui.setItem(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8), ItemBuilder.from(Material.BLACK_STAINED_GLASS_PANE).name(Colourify.colour(" ")).asGuiItem());
+        gui.setItem(List.of(46, 47, 48, 50, 51, 52), ItemBuilder.from(Material.BLACK_STAINED_GLASS_PANE).name(Colourify.colour(" ")).asGuiItem());
+    }
+
+    /**
+     * Renders the first page off the main thread, then opens the GUI for the player
+     *
+     * @param player The player to open the GUI for
+     */
+    public void open(Player player) {
+        long start = System.nanoTime();
+        this.showPage(0).thenRun(() -> Bukkit.getScheduler().runTask(FindItemAddOn.getInstance(), () -> {
+            gui.open(player);
+            SearchMetrics.getInstance().OPEN.observeSince(start);
+        }));
+    }
+
+    /**
+     * Replaces the entries being listed, e.g. once a search that opened with only its
+     * first page has finished, and re-renders the page being viewed
+     *
+     * @param source The new entries
+     */
+    public void setSource(List<T> source) {
+        this.source = source;
+        this.showPage(requestedPage);
+    }
+
+    public int getPages() {
+        return Math.max(1, (source.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    public void next() {
+        if (requestedPage + 1 >= getPages()) return;
+        this.showPage(++requestedPage);
+    }
+
+    public void previous() {
+        if (requestedPage <= 0) return;
+        this.showPage(--requestedPage);
+    }
+
+    private CompletableFuture<Void> showPage(int page) {
+        return CompletableFuture.supplyAsync(() -> this.renderPage(page), SearchExecutor.get())
+                .thenCompose(items -> {
+                    CompletableFuture<Void> applied = new CompletableFuture<>();
+                    Bukkit.getScheduler().runTask(FindItemAddOn.getInstance(), () -> {
+                        // Another page was requested while this one rendered
+                        if (page == requestedPage) this.applyPage(items);
+                        applied.complete(null);
+                    });
+                    return applied;
+                })
+                .exceptionally(throwable -> {
+                    FindItemAddOn.getInstance().getLogger().severe("Failed to render GUI page: " + throwable.getMessage());
+                    return null;
+                });
+    }
+
+    private List<GuiItem> renderPage(int page) {
+        long start = System.nanoTime();
+        List<T> source = this.source;
+        List<GuiItem> items = new ArrayList<>(PAGE_SIZE);
+        int end = Math.min(source.size(), (page + 1) * PAGE_SIZE);
+        for (int i = page * PAGE_SIZE; i < end; i++) {
+            GuiItem item = renderer.apply(source.get(i));
+            if (item != null) items.add(item);
+        }
+        SearchMetrics.getInstance().GUI_BUILD.observeSince(start);
+        return items;
+    }
+
+    private void applyPage(List<GuiItem> items) {
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            if (i < items.size()) {
+                gui.setItem(FIRST_ITEM_SLOT + i, items.get(i));
+            } else {
+                gui.removeItem(FIRST_ITEM_SLOT + i);
+            }
+        }
+        gui.update();
+    }
+
+}
@@ -18,11 +18,25 @@
  */
 package uk.mangostudios.finditemaddon.gui.impl;
 
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Location;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.UUID;
 
-public record ShopItem(double shopPrice, int remainingStockOrSpace, UUID shopOwner, Location shopLocation, ItemStack item, boolean toBuy, @NotNull String itemName) {
+public record ShopItem(double shopPrice, int remainingStockOrSpace, UUID shopOwner, Location shopLocation, ItemStack item, boolean toBuy, @NotNull String itemName, long shopId) {
+
+    // Stands in for the owner of shops without a player owner, e.g. admin shops
+    public static final UUID NO_OWNER = new UUID(0, 0);
+
+    /**
+     * Normalises an item's display name for searching and sorting
+     *
+     * @param item The item
+     * @return The plain text, lower-cased display name
+     */
+    public static @NotNull String normaliseItemName(ItemStack item) {
+        return PlainTextComponentSerializer.plainText().serialize(item.displayName()).toLowerCase();
+    }
 }
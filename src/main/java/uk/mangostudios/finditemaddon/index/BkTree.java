@@ -0,0 +1,101 @@
+package uk.mangostudios.finditemaddon.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Burkhard-Keller tree of terms under the Levenshtein distance, for finding every term
+ * within a small edit distance of a query without comparing it against each term.
+ * <p>
+ * Terms can only be added. Lookups are safe while terms are being added from another thread.
+ */
+public class BkTree {
+
+    private volatile Node root;
+
+    public synchronized void add(String term) {
+        if (root == null) {
+            root = new Node(term);
+            return;
+        }
+
+        Node node = root;
+        while (true) {
+            int distance = distance(term, node.term);
+            if (distance == 0) return;
+            Node child = node.children.putIfAbsent(distance, new Node(term));
+            if (child == null) return;
+            node = child;
+        }
+    }
+
+    /**
+     * Finds the terms within the given edit distance of the query
+     *
+     * @param query       The query
+     * @param maxDistance The maximum edit distance
+     * @return The matching terms, closest first
+     */
+    public List<Match> search(String query, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        Node root = this.root;
+        if (root == null) return matches;
+
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(query, node.term);
+            if (distance <= maxDistance) matches.add(new Match(node.term, distance));
+
+            // By the triangle inequality, only children at distance - max..distance + max can match
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= maxDistance) pending.push(child.getValue());
+            }
+        }
+
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparing(Match::term));
+        return matches;
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings
+     */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    public record Match(String term, int distance) {
+    }
+
+    private static final class Node {
+
+        private final String term;
+        private final Map<Integer, Node> children = new ConcurrentHashMap<>();
+
+        private Node(String term) {
+            this.term = term;
+        }
+    }
+
+}
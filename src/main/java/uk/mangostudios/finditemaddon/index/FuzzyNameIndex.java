@@ -0,0 +1,89 @@
+package uk.mangostudios.finditemaddon.index;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typo-tolerant lookup of search terms: the names of all item materials, and the
+ * display names of the items in indexed shops.
+ * <p>
+ * Display names are reference counted per shop. Names no shop lists any more stay in the
+ * tree, which can't remove terms, but are skipped until the next rebuild.
+ */
+public class FuzzyNameIndex {
+
+    private final Set<String> materialTerms = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> nameCounts = new ConcurrentHashMap<>();
+    private volatile BkTree tree = new BkTree();
+
+    /**
+     * Rebuilds the index from the material names and the given shops
+     *
+     * @param shops All indexed shops
+     */
+    public void rebuild(Collection<ShopSnapshot> shops) {
+        BkTree tree = new BkTree();
+        materialTerms.clear();
+        nameCounts.clear();
+        for (Material material : Material.values()) {
+            if (material.isLegacy() || !material.isItem() || material.isAir()) continue;
+            String term = ShopNameIndex.normaliseQuery(material.name());
+            materialTerms.add(term);
+            tree.add(term);
+        }
+        shops.forEach(shop -> this.add(tree, shop.itemName()));
+        this.tree = tree;
+    }
+
+    public void add(String itemName) {
+        this.add(tree, itemName);
+    }
+
+    public void remove(String itemName) {
+        nameCounts.computeIfPresent(toTerm(itemName), (term, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Finds the terms closest to a query which didn't match anything exactly
+     *
+     * @param query The raw search query
+     * @param limit The maximum number of terms to return
+     * @return The closest terms, closest first, with spaces in place of underscores
+     */
+    public List<String> findClosest(String query, int limit) {
+        String normalised = ShopNameIndex.normaliseQuery(query).trim();
+        // Allow one typo in short queries and two in longer ones
+        int maxDistance = normalised.length() <= 4 ? 1 : 2;
+
+        List<String> closest = new ArrayList<>(limit);
+        for (BkTree.Match match : tree.search(normalised, maxDistance)) {
+            if (match.distance() == 0) continue;
+            if (!materialTerms.contains(match.term()) && !nameCounts.containsKey(match.term())) continue;
+            closest.add(match.term());
+            if (closest.size() >= limit) break;
+        }
+        return closest;
+    }
+
+    private void add(BkTree tree, String itemName) {
+        String term = toTerm(itemName);
+        if (nameCounts.merge(term, 1, Integer::sum) == 1) tree.add(term);
+    }
+
+    /**
+     * Strips the brackets item display names are wrapped in
+     */
+    static String toTerm(String itemName) {
+        if (itemName.length() >= 2 && itemName.charAt(0) == '[' && itemName.charAt(itemName.length() - 1) == ']') {
+            return itemName.substring(1, itemName.length() - 1);
+        }
+        return itemName;
+    }
+
+}
@@ -0,0 +1,94 @@
+package uk.mangostudios.finditemaddon.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A prefix trie of reference counted terms, for completing a partially typed term.
+ * <p>
+ * Each node tracks how many terms live below it, so subtrees whose terms were all
+ * removed are skipped without being walked.
+ */
+public class PrefixTrie {
+
+    private final Node root = new Node();
+
+    public synchronized void clear() {
+        root.children.clear();
+        root.count = 0;
+        root.subtreeCount = 0;
+    }
+
+    public synchronized void add(String term) {
+        Node node = root;
+        node.subtreeCount++;
+        for (int i = 0; i < term.length(); i++) {
+            node = node.children.computeIfAbsent(term.charAt(i), c -> new Node());
+            node.subtreeCount++;
+        }
+        node.count++;
+    }
+
+    public synchronized void remove(String term) {
+        if (!contains(term)) return;
+        Node node = root;
+        node.subtreeCount--;
+        for (int i = 0; i < term.length(); i++) {
+            Node child = node.children.get(term.charAt(i));
+            if (--child.subtreeCount == 0) {
+                // Nothing is left below, drop the whole branch
+                node.children.remove(term.charAt(i));
+                return;
+            }
+            node = child;
+        }
+        node.count--;
+    }
+
+    /**
+     * Finds the terms starting with a prefix
+     *
+     * @param prefix The prefix
+     * @param limit  The maximum number of terms to return
+     * @return The matching terms in alphabetical order
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        List<String> terms = new ArrayList<>(Math.min(limit, 16));
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node != null) {
+            collect(node, new StringBuilder(prefix), terms, limit);
+        }
+        return terms;
+    }
+
+    private boolean contains(String term) {
+        Node node = root;
+        for (int i = 0; i < term.length() && node != null; i++) {
+            node = node.children.get(term.charAt(i));
+        }
+        return node != null && node.count > 0;
+    }
+
+    private static void collect(Node node, StringBuilder term, List<String> terms, int limit) {
+        if (node.count > 0) terms.add(term.toString());
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            if (terms.size() >= limit) return;
+            term.append(child.getKey());
+            collect(child.getValue(), term, terms, limit);
+            term.setLength(term.length() - 1);
+        }
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new TreeMap<>();
+        private int count;
+        private int subtreeCount;
+    }
+
+}
@@ -0,0 +1,139 @@
+package uk.mangostudios.finditemaddon.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Trigram index over the normalised display names of shop items.
+ * <p>
+ * A query is narrowed to the shops sharing its rarest trigram, and only those candidates are
+ * verified with a substring match against their pre-normalised name.
+ */
+public class ShopNameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final Map<Long, ShopSnapshot> shops = new ConcurrentHashMap<>();
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Clears the index and re-adds every given shop
+     *
+     * @param allShops All shops to index
+     */
+    public void rebuild(Collection<ShopSnapshot> allShops) {
+        shops.clear();
+        names.clear();
+        postings.clear();
+        allShops.forEach(this::add);
+    }
+
+    public void add(ShopSnapshot shop) {
+        long shopId = shop.shopId();
+        String name = shop.itemName();
+        shops.put(shopId, shop);
+        names.put(shopId, name);
+        // Added within the compute, so a concurrent remove can't drop the posting in between
+        forEachGram(name, gram -> postings.compute(gram, (k, posting) -> {
+            if (posting == null) posting = ConcurrentHashMap.newKeySet();
+            posting.add(shopId);
+            return posting;
+        }));
+    }
+
+    public void remove(long shopId) {
+        String name = names.remove(shopId);
+        shops.remove(shopId);
+        if (name == null) return;
+        // Empty postings are dropped, so grams of renamed or removed shops don't pile up
+        forEachGram(name, gram -> postings.computeIfPresent(gram, (k, posting) -> {
+            posting.remove(shopId);
+            return posting.isEmpty() ? null : posting;
+        }));
+    }
+
+    /**
+     * Returns the snapshot indexed under the given id
+     *
+     * @param shopId The shop id
+     * @return The snapshot, or null if the shop is not indexed
+     */
+    public ShopSnapshot getShop(long shopId) {
+        return shops.get(shopId);
+    }
+
+    /**
+     * Returns a live, read-only view of every indexed snapshot
+     */
+    public Collection<ShopSnapshot> getShops() {
+        return Collections.unmodifiableCollection(shops.values());
+    }
+
+    /**
+     * Returns the normalised name a shop was indexed under
+     *
+     * @param shopId The shop id
+     * @return The normalised name, or null if the shop is not indexed
+     */
+    public String getName(long shopId) {
+        return names.get(shopId);
+    }
+
+    /**
+     * Finds all shops whose normalised item name contains the query
+     *
+     * @param query The raw search query
+     * @return The matching shops
+     */
+    public List<ShopSnapshot> search(String query) {
+        String normalised = normaliseQuery(query);
+        List<ShopSnapshot> results = new ArrayList<>();
+
+        // Too short to produce a gram, verify everything
+        if (normalised.length() < GRAM_LENGTH) {
+            names.forEach((shopId, name) -> {
+                if (name.contains(normalised)) results.add(shops.get(shopId));
+            });
+            return results;
+        }
+
+        // Narrow down to the smallest posting list of the query's grams
+        Set<Long> candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= normalised.length(); i++) {
+            Set<Long> posting = postings.get(gram(normalised, i));
+            if (posting == null) return results;
+            if (candidates == null || posting.size() < candidates.size()) candidates = posting;
+        }
+
+        for (Long shopId : candidates) {
+            String name = names.get(shopId);
+            ShopSnapshot shop = shops.get(shopId);
+            if (name != null && shop != null && name.contains(normalised)) results.add(shop);
+        }
+        return results;
+    }
+
+    public static String normaliseQuery(String query) {
+        return query.replace("_", " ").toLowerCase();
+    }
+
+    private static void forEachGram(String name, LongConsumer consumer) {
+        for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+            consumer.accept(gram(name, i));
+        }
+    }
+
+    /**
+     * Packs three UTF-16 characters into a single long key
+     */
+    private static long gram(String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+}
@@ -0,0 +1,126 @@
+package uk.mangostudios.finditemaddon.index;
+
+import org.jetbrains.annotations.Nullable;
+import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable search result, with index permutations for every sort order computed once
+ * when the result is built. Sorted views share the underlying array and are safe to hand
+ * to any number of threads at once.
+ */
+public final class ShopResults {
+
+    // Ties are broken by shop id, so every order is total and a top-K first page matches the start of the sorted view
+    private static final Comparator<ShopItem> BY_PRICE = Comparator.comparingDouble(ShopItem::shopPrice)
+            .thenComparingLong(ShopItem::shopId);
+    private static final Comparator<ShopItem> BY_STOCK = Comparator.comparingInt(ShopItem::remainingStockOrSpace).reversed()
+            .thenComparingLong(ShopItem::shopId);
+    private static final Comparator<ShopItem> BY_NAME = Comparator.comparing(ShopItem::itemName)
+            .thenComparingLong(ShopItem::shopId);
+
+    public static final ShopResults EMPTY = new ShopResults(List.of());
+
+    private final ShopItem[] items;
+    private final int[] byPrice;
+    private final int[] byStock;
+    private final int[] byName;
+
+    public ShopResults(Collection<ShopItem> shopItems) {
+        this.items = shopItems.toArray(new ShopItem[0]);
+        this.byPrice = permutation(BY_PRICE);
+        this.byStock = permutation(BY_STOCK);
+        this.byName = permutation(BY_NAME);
+    }
+
+    /**
+     * Returns the order used by a shop sorting method
+     *
+     * @param sortingMethod The shop sorting method
+     * @return The comparator, or null for random order
+     */
+    public static @Nullable Comparator<ShopItem> comparator(int sortingMethod) {
+        return switch (sortingMethod) {
+            case 1 -> null;
+            case 3 -> BY_STOCK;
+            default -> BY_PRICE;
+        };
+    }
+
+    /**
+     * Returns a read-only view of the results in the order given by a shop sorting method
+     *
+     * @param sortingMethod 1 for random, 2 for price (lower to higher), 3 for stock (higher to lower)
+     * @return The sorted view
+     */
+    public List<ShopItem> view(int sortingMethod) {
+        return switch (sortingMethod) {
+            // Random, shuffled per request so the shared data is never touched
+            case 1 -> new PermutationView(items, shuffled());
+            case 3 -> new PermutationView(items, byStock);
+            default -> new PermutationView(items, byPrice);
+        };
+    }
+
+    /**
+     * Returns a read-only view of the results in item name order
+     */
+    public List<ShopItem> byName() {
+        return new PermutationView(items, byName);
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    private int[] permutation(Comparator<ShopItem> comparator) {
+        return IntStream.range(0, items.length)
+                .boxed()
+                .sorted((a, b) -> comparator.compare(items[a], items[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private int[] shuffled() {
+        int[] order = new int[items.length];
+        for (int i = 0; i < order.length; i++) {
+            int j = ThreadLocalRandom.current().nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+
+    private static final class PermutationView extends AbstractList<ShopItem> implements RandomAccess {
+
+        private final ShopItem[] items;
+        private final int[] order;
+
+        private PermutationView(ShopItem[] items, int[] order) {
+            this.items = items;
+            this.order = order;
+        }
+
+        @Override
+        public ShopItem get(int index) {
+            return items[order[index]];
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+    }
+
+}
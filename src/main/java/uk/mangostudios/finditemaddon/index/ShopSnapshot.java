@@ -0,0 +1,83 @@
+package uk.mangostudios.finditemaddon.index;
+
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
+import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * An immutable copy of the fields of a shop that searches need, so they can be matched,
+ * filtered and sorted on any thread without touching the live QuickShop shop.
+ *
+ * @param shopId         The QuickShop shop id
+ * @param price          The price per item
+ * @param remainingStock The remaining stock, or 0 if the shop isn't selling
+ * @param remainingSpace The remaining space, or 0 if the shop isn't buying
+ * @param owner          The owner, or null if the shop has no player owner
+ * @param location       The location of the shop container
+ * @param material       The traded material
+ * @param itemName       The normalised display name of the traded item
+ * @param item           The traded item; must not be modified
+ * @param selling        Whether the shop sells to players
+ * @param buying         Whether the shop buys from players
+ * @param searchable     Whether players outside the shop's groups may search for it
+ */
+public record ShopSnapshot(long shopId, double price, int remainingStock, int remainingSpace, @Nullable UUID owner,
+                           Location location, Material material, String itemName, ItemStack item,
+                           boolean selling, boolean buying, boolean searchable) {
+
+    // Not in any of a shop's groups, so it gets the permissions of every other player
+    private static final UUID ANY_PLAYER = new UUID(0, 0);
+
+    /**
+     * Takes a snapshot of a shop. Must be called on the main thread, as it reads the shop's inventory.
+     *
+     * @param shop The shop
+     * @return The snapshot
+     */
+    public static ShopSnapshot of(Shop shop) {
+        ItemStack item = shop.getItem().clone();
+        return new ShopSnapshot(
+                shop.getShopId(),
+                shop.getPrice(),
+                shop.isSelling() ? shop.getRemainingStock() : 0,
+                shop.isBuying() ? shop.getRemainingSpace() : 0,
+                shop.getOwner().getUniqueId(),
+                shop.getLocation().clone(),
+                item.getType(),
+                ShopItem.normaliseItemName(item),
+                item,
+                shop.isSelling(),
+                shop.isBuying(),
+                shop.playerAuthorize(ANY_PLAYER, BuiltInShopPermission.SEARCH)
+        );
+    }
+
+    /**
+     * Returns whether another snapshot differs from this one at most in stock and space
+     *
+     * @param other The other snapshot, usually of the same shop
+     */
+    public boolean sameListingAs(ShopSnapshot other) {
+        return shopId == other.shopId
+                && Double.compare(price, other.price) == 0
+                && Objects.equals(owner, other.owner)
+                && location.equals(other.location)
+                && material == other.material
+                && itemName.equals(other.itemName)
+                && item.equals(other.item)
+                && selling == other.selling
+                && buying == other.buying;
+    }
+
+    public int remainingStockOrSpace(boolean toBuy) {
+        return toBuy ? remainingStock : remainingSpace;
+    }
+
+}
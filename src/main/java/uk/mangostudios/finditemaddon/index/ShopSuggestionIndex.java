@@ -0,0 +1,65 @@
+package uk.mangostudios.finditemaddon.index;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Search suggestions for the to-buy and to-sell commands: the material and display names of
+ * items that at least one shop currently has in stock (or space for), kept per side.
+ */
+public class ShopSuggestionIndex {
+
+    // Terms of selling shops with stock, suggested to players buying
+    private final PrefixTrie toBuy = new PrefixTrie();
+    // Terms of buying shops with space, suggested to players selling
+    private final PrefixTrie toSell = new PrefixTrie();
+
+    public void rebuild(Collection<ShopSnapshot> shops) {
+        toBuy.clear();
+        toSell.clear();
+        shops.forEach(this::add);
+    }
+
+    public void add(ShopSnapshot shop) {
+        if (shop.selling() && shop.remainingStock() != 0) {
+            toBuy.add(materialTerm(shop));
+            toBuy.add(nameTerm(shop));
+        }
+        if (shop.buying() && shop.remainingSpace() != 0) {
+            toSell.add(materialTerm(shop));
+            toSell.add(nameTerm(shop));
+        }
+    }
+
+    public void remove(ShopSnapshot shop) {
+        if (shop.selling() && shop.remainingStock() != 0) {
+            toBuy.remove(materialTerm(shop));
+            toBuy.remove(nameTerm(shop));
+        }
+        if (shop.buying() && shop.remainingSpace() != 0) {
+            toSell.remove(materialTerm(shop));
+            toSell.remove(nameTerm(shop));
+        }
+    }
+
+    /**
+     * Completes a partially typed search
+     *
+     * @param input The typed search
+     * @param toBuy Whether the player is buying (selling shops) or selling (buying shops)
+     * @param limit The maximum number of suggestions
+     * @return The suggestions, in alphabetical order
+     */
+    public List<String> suggest(String input, boolean toBuy, int limit) {
+        return (toBuy ? this.toBuy : this.toSell).complete(input.toLowerCase().replace(' ', '_'), limit);
+    }
+
+    private static String materialTerm(ShopSnapshot shop) {
+        return shop.material().name().toLowerCase();
+    }
+
+    private static String nameTerm(ShopSnapshot shop) {
+        return FuzzyNameIndex.toTerm(shop.itemName()).replace(' ', '_');
+    }
+
+}
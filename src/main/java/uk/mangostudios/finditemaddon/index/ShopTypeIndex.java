@@ -0,0 +1,80 @@
+package uk.mangostudios.finditemaddon.index;
+
+import org.bukkit.Material;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index of shop snapshots keyed by the {@link Material} they trade, kept separately for
+ * selling shops (players search these "to buy") and buying shops ("to sell").
+ * <p>
+ * A material's shops are only allocated once a shop trading it is added, and are kept after that,
+ * so the views handed out stay live. Lookups are safe from async command threads.
+ */
+public class ShopTypeIndex {
+
+    private final Map<Material, Map<Long, ShopSnapshot>> sellingShops = new ConcurrentHashMap<>();
+    private final Map<Material, Map<Long, ShopSnapshot>> buyingShops = new ConcurrentHashMap<>();
+    private final Map<Long, Material> indexedMaterials = new ConcurrentHashMap<>();
+
+    /**
+     * Clears the index and re-adds every given shop
+     *
+     * @param shops All shops to index
+     */
+    public void rebuild(Collection<ShopSnapshot> shops) {
+        sellingShops.values().forEach(Map::clear);
+        buyingShops.values().forEach(Map::clear);
+        indexedMaterials.clear();
+        shops.forEach(this::add);
+    }
+
+    public void add(ShopSnapshot shop) {
+        Material material = shop.material();
+        indexedMaterials.put(shop.shopId(), material);
+        if (shop.selling()) {
+            sellingShops.computeIfAbsent(material, k -> new ConcurrentHashMap<>()).put(shop.shopId(), shop);
+        } else if (shop.buying()) {
+            buyingShops.computeIfAbsent(material, k -> new ConcurrentHashMap<>()).put(shop.shopId(), shop);
+        }
+    }
+
+    public void remove(long shopId) {
+        Material material = indexedMaterials.remove(shopId);
+        if (material == null) return;
+        Map<Long, ShopSnapshot> selling = sellingShops.get(material);
+        if (selling != null) selling.remove(shopId);
+        Map<Long, ShopSnapshot> buying = buyingShops.get(material);
+        if (buying != null) buying.remove(shopId);
+    }
+
+    /**
+     * Returns the material a shop was indexed under
+     *
+     * @param shopId The shop id
+     * @return The material, or null if the shop is not indexed
+     */
+    public Material getMaterial(long shopId) {
+        return indexedMaterials.get(shopId);
+    }
+
+    /**
+     * Returns a live, read-only view of the shops trading the given material
+     *
+     * @param material The material to look up
+     * @param toBuy    Whether the player is buying (selling shops) or selling (buying shops)
+     * @return The matching shops, or an empty list if no shop has traded the material yet
+     */
+    public Collection<ShopSnapshot> getShops(Material material, boolean toBuy) {
+        Map<Long, ShopSnapshot> shops = (toBuy ? sellingShops : buyingShops).get(material);
+        if (shops == null) return Collections.emptyList();
+        return Collections.unmodifiableCollection(shops.values());
+    }
+
+    public int size() {
+        return indexedMaterials.size();
+    }
+}
@@ -0,0 +1,25 @@
+package uk.mangostudios.finditemaddon.index;
+
+import uk.mangostudios.finditemaddon.gui.impl.ShopItem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The results of a search as seen by one player: the first page, which is final as soon as it is
+ * available, and the full result, which may still be being sorted and filtered in the background.
+ *
+ * @param firstPage  The first page of results
+ * @param allResults Completes with every result, starting with the first page
+ */
+public record StreamedResults(List<ShopItem> firstPage, CompletableFuture<List<ShopItem>> allResults) {
+
+    public static StreamedResults completed(List<ShopItem> results, int pageSize) {
+        return new StreamedResults(results.subList(0, Math.min(pageSize, results.size())), CompletableFuture.completedFuture(results));
+    }
+
+    public boolean isEmpty() {
+        return firstPage.isEmpty();
+    }
+
+}
@@ -0,0 +1,46 @@
+package uk.mangostudios.finditemaddon.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best {@code limit} entries seen so far in a bounded heap, so the first page
+ * of a sorted result can be known without sorting every match.
+ *
+ * @param <T> The type of the entries
+ */
+public class TopKCollector<T> {
+
+    private final Comparator<T> comparator;
+    private final int limit;
+    // The worst kept entry is at the head, so it can be evicted cheaply
+    private final PriorityQueue<T> heap;
+
+    public TopKCollector(Comparator<T> comparator, int limit) {
+        this.comparator = comparator;
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(limit + 1, comparator.reversed());
+    }
+
+    /**
+     * Checks whether an entry would make it into the kept entries, so callers can skip
+     * expensive checks for entries that would be discarded anyway
+     */
+    public boolean wouldAccept(T entry) {
+        return heap.size() < limit || comparator.compare(entry, heap.peek()) < 0;
+    }
+
+    public void add(T entry) {
+        heap.add(entry);
+        if (heap.size() > limit) heap.poll();
+    }
+
+    public List<T> toSortedList() {
+        List<T> sorted = new ArrayList<>(heap);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+}
@@ -0,0 +1,142 @@
+package uk.mangostudios.finditemaddon.index;
+
+import com.olziedev.playerwarps.api.warp.Warp;
+import org.bukkit.Location;
+import org.jetbrains.annotations.Nullable;
+import uk.mangostudios.finditemaddon.util.LocationUtil;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Spatial index of player warps, keyed by warp owner and world and bucketed into a
+ * grid of {@link #CELL_SIZE} block cells, so a nearest warp lookup only looks at
+ * the owner's warps in the cells around the shop.
+ */
+public class WarpIndex {
+
+    public static final double MAX_WARP_DISTANCE = 200;
+    private static final int CELL_SIZE = (int) MAX_WARP_DISTANCE;
+
+    // Replaced as a whole on rebuild, so lookups never see a half-built index
+    private volatile Grid grid = new Grid();
+
+    /**
+     * Replaces every indexed warp. The new index is built aside and swapped in at once,
+     * so lookups running meanwhile keep seeing the old warps.
+     */
+    public void rebuild(Collection<Warp> allWarps) {
+        Grid rebuilt = new Grid();
+        allWarps.forEach(rebuilt::add);
+        grid = rebuilt;
+    }
+
+    public void add(Warp warp) {
+        grid.add(warp);
+    }
+
+    public void remove(Warp warp) {
+        grid.remove(warp);
+    }
+
+    /**
+     * Finds the nearest unlocked warp of a shop owner within {@link #MAX_WARP_DISTANCE} blocks of a location.
+     * Warps found that have moved or changed owner since they were indexed are re-indexed where they are now.
+     *
+     * @param location The shop location
+     * @param owner    The shop owner
+     * @return The nearest warp, or null if there is none in range
+     */
+    @Nullable
+    public Warp findNearest(Location location, UUID owner) {
+        Grid grid = this.grid;
+        Map<String, Map<Long, List<Warp>>> ownerWarps = grid.warps.get(owner);
+        if (ownerWarps == null || location.getWorld() == null) return null;
+        String world = location.getWorld().getName();
+        Map<Long, List<Warp>> worldWarps = ownerWarps.get(world);
+        if (worldWarps == null) return null;
+
+        int cellX = cellCoord(location.getX());
+        int cellZ = cellCoord(location.getZ());
+        Warp nearest = null;
+        double nearestDistance = MAX_WARP_DISTANCE;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                long cellKey = cellKey(cellX + dx, cellZ + dz);
+                List<Warp> cellWarps = worldWarps.get(cellKey);
+                if (cellWarps == null) continue;
+                for (Warp warp : cellWarps) {
+                    IndexedCell current = IndexedCell.of(warp);
+                    if (current == null || !current.equals(new IndexedCell(owner, world, cellKey))) {
+                        grid.add(warp);
+                        if (current == null || !current.owner().equals(owner) || !current.world().equals(world)) continue;
+                    }
+                    double distance = LocationUtil.calculateDistance3D(
+                            location.getX(), location.getY(), location.getZ(),
+                            warp.getWarpLocation().getX(), warp.getWarpLocation().getY(), warp.getWarpLocation().getZ());
+                    if (distance > nearestDistance || warp.isWarpLocked()) continue;
+                    nearest = warp;
+                    nearestDistance = distance;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private static int cellCoord(double coord) {
+        return Math.floorDiv((int) Math.floor(coord), CELL_SIZE);
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    private record IndexedCell(UUID owner, String world, long cell) {
+
+        /**
+         * @return Where the warp belongs now, or null if its world isn't known
+         */
+        private static @Nullable IndexedCell of(Warp warp) {
+            if (warp.getWarpLocation().getWorld() == null) return null;
+            return new IndexedCell(
+                    warp.getWarpPlayer().getUUID(),
+                    warp.getWarpLocation().getWorld(),
+                    cellKey(cellCoord(warp.getWarpLocation().getX()), cellCoord(warp.getWarpLocation().getZ())));
+        }
+    }
+
+    private static final class Grid {
+
+        // Owner -> World -> Cell -> Warps
+        private final Map<UUID, Map<String, Map<Long, List<Warp>>>> warps = new ConcurrentHashMap<>();
+        // Where each warp was indexed, so it can be removed even if it has moved since
+        private final Map<Warp, IndexedCell> indexedCells = new ConcurrentHashMap<>();
+
+        private void add(Warp warp) {
+            this.remove(warp);
+            IndexedCell cell = IndexedCell.of(warp);
+            if (cell == null) return;
+            indexedCells.put(warp, cell);
+            warps.computeIfAbsent(cell.owner(), k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(cell.world(), k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(cell.cell(), k -> new CopyOnWriteArrayList<>())
+                    .add(warp);
+        }
+
+        private void remove(Warp warp) {
+            IndexedCell cell = indexedCells.remove(warp);
+            if (cell == null) return;
+            Map<String, Map<Long, List<Warp>>> ownerWarps = warps.get(cell.owner());
+            if (ownerWarps == null) return;
+            Map<Long, List<Warp>> worldWarps = ownerWarps.get(cell.world());
+            if (worldWarps == null) return;
+            List<Warp> cellWarps = worldWarps.get(cell.cell());
+            if (cellWarps != null) cellWarps.remove(warp);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package uk.mangostudios.finditemaddon.listener;
+
+import com.ghostchu.quickshop.api.event.ShopCreateSuccessEvent;
+import com.ghostchu.quickshop.api.event.ShopDeleteEvent;
+import com.ghostchu.quickshop.api.event.ShopItemChangeEvent;
+import com.ghostchu.quickshop.api.event.ShopPriceChangeEvent;
+import com.ghostchu.quickshop.api.event.ShopSuccessPurchaseEvent;
+import com.ghostchu.quickshop.api.event.ShopTypeChangeEvent;
+import com.ghostchu.quickshop.api.shop.Shop;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.cache.OwnerBalanceCache;
+import uk.mangostudios.finditemaddon.cache.SafeLocationCache;
+import uk.mangostudios.finditemaddon.external.QuickShopHandler;
+
+/**
+ * Keeps the shop index in sync with QuickShop, one shop at a time
+ */
+public class QuickShopEventListeners implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCreate(ShopCreateSuccessEvent event) {
+        this.update(event.getShop());
+        SafeLocationCache.getInstance().track(event.getShop().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDelete(ShopDeleteEvent event) {
+        QuickShopHandler.getInstance().removeShop(event.getShop());
+        SafeLocationCache.getInstance().untrack(event.getShop().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPriceChange(ShopPriceChangeEvent event) {
+        this.update(event.getShop());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemChange(ShopItemChangeEvent event) {
+        this.update(event.getShop());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTypeChange(ShopTypeChangeEvent event) {
+        this.update(event.getShop());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPurchase(ShopSuccessPurchaseEvent event) {
+        // The owner's balance changed, so their cached balance is stale
+        OwnerBalanceCache.getInstance().invalidate(event.getShop().getOwner().getUniqueId());
+        this.update(event.getShop());
+    }
+
+    /**
+     * Re-indexes a shop on the next tick, as QuickShop fires most change events before applying the change
+     *
+     * @param shop the shop to re-index
+     */
+    private void update(Shop shop) {
+        Bukkit.getScheduler().runTask(FindItemAddOn.getInstance(), () -> {
+            if (shop.isDeleted()) return;
+            QuickShopHandler.getInstance().updateShop(shop);
+        });
+    }
+
+}
@@ -0,0 +1,51 @@
+package uk.mangostudios.finditemaddon.listener;
+
+import com.ghostchu.quickshop.api.shop.Shop;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.inventory.Inventory;
+import uk.mangostudios.finditemaddon.external.QuickShopHandler;
+
+/**
+ * Marks shops whose container contents may have changed, so their stock and space
+ * are re-read by {@link QuickShopHandler#refreshChangedStock()} instead of on every search
+ */
+public class ShopInventoryListeners implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemMove(InventoryMoveItemEvent event) {
+        this.markChanged(event.getSource());
+        this.markChanged(event.getDestination());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClose(InventoryCloseEvent event) {
+        this.markChanged(event.getInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        // Shops in unloaded chunks keep their last known stock until the chunk is loaded again
+        if (event.isNewChunk()) return;
+        QuickShopHandler.getInstance().getShopsInChunk(event.getChunk())
+                .forEach(QuickShopHandler.getInstance()::markStockChanged);
+    }
+
+    private void markChanged(Inventory inventory) {
+        if (inventory.getType() == InventoryType.PLAYER || inventory.getType() == InventoryType.HOPPER) return;
+        Location location = inventory.getLocation();
+        if (location == null) return;
+
+        Shop shop = QuickShopHandler.getInstance().findShopAtLocation(location);
+        if (shop != null) {
+            QuickShopHandler.getInstance().markStockChanged(shop);
+        }
+    }
+
+}
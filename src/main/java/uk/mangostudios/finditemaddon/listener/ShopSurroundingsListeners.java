@@ -0,0 +1,64 @@
+package uk.mangostudios.finditemaddon.listener;
+
+import com.ghostchu.quickshop.api.shop.Shop;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import uk.mangostudios.finditemaddon.cache.SafeLocationCache;
+import uk.mangostudios.finditemaddon.external.QuickShopHandler;
+
+/**
+ * Drops the cached teleport destinations of shops whose surroundings changed, see {@link SafeLocationCache}
+ */
+public class ShopSurroundingsListeners implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPhysics(BlockPhysicsEvent event) {
+        this.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        // Shops whose search reads this chunk were skipped while it wasn't loaded, work them out now.
+        // That includes shops on the edge of the neighbouring chunks.
+        Chunk chunk = event.getChunk();
+        World world = chunk.getWorld();
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                int chunkX = chunk.getX() + dx;
+                int chunkZ = chunk.getZ() + dz;
+                if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+                for (Shop shop : QuickShopHandler.getInstance().getShopsInChunk(world.getChunkAt(chunkX, chunkZ))) {
+                    Location shopLocation = shop.getLocation();
+                    if (SafeLocationCache.readsChunk(shopLocation, chunk.getX(), chunk.getZ())
+                            && !SafeLocationCache.getInstance().isCached(shopLocation)) {
+                        SafeLocationCache.getInstance().track(shopLocation);
+                    }
+                }
+            }
+        }
+    }
+
+    private void invalidate(Block block) {
+        SafeLocationCache.getInstance().invalidateAround(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+    }
+
+}
@@ -0,0 +1,111 @@
+package uk.mangostudios.finditemaddon.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram with fixed bucket bounds, in the shape Prometheus expects.
+ * Recording is cheap enough to do on every search.
+ */
+public class Histogram {
+
+    private static final double[] LATENCY_BOUNDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5
+    };
+    private static final double[] SIZE_BOUNDS = {
+            0, 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000
+    };
+
+    private final String name;
+    private final String help;
+    private final double[] bounds;
+    // One more bucket than bounds, for values above the last bound
+    private final LongAdder[] buckets;
+    private final DoubleAdder sum = new DoubleAdder();
+    private final LongAdder count = new LongAdder();
+
+    private Histogram(String name, String help, double[] bounds) {
+        this.name = name;
+        this.help = help;
+        this.bounds = bounds;
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Creates a histogram of durations in seconds, from 0.1 ms to 2.5 s
+     */
+    public static Histogram latency(String name, String help) {
+        return new Histogram(name, help, LATENCY_BOUNDS);
+    }
+
+    /**
+     * Creates a histogram of result sizes, from 0 to 10000
+     */
+    public static Histogram size(String name, String help) {
+        return new Histogram(name, help, SIZE_BOUNDS);
+    }
+
+    public void observe(double value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) bucket++;
+        buckets[bucket].increment();
+        sum.add(value);
+        count.increment();
+    }
+
+    /**
+     * Records the time since a start time, as seconds
+     *
+     * @param startNanos The start time, from {@link System#nanoTime()}
+     */
+    public void observeSince(long startNanos) {
+        this.observe((System.nanoTime() - startNanos) / 1_000_000_000D);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Estimates a quantile as the upper bound of the bucket it falls in
+     *
+     * @param quantile The quantile, between 0 and 1
+     * @return The estimate, or {@link Double#POSITIVE_INFINITY} if it falls above the last bound
+     */
+    public double getQuantile(double quantile) {
+        long total = this.getCount();
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) return bounds[i];
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    void writePrometheus(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{le=\"").append(bounds[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += buckets[bounds.length].sum();
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum ").append(this.getSum()).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+
+}
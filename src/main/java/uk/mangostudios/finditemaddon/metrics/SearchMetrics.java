@@ -0,0 +1,157 @@
+package uk.mangostudios.finditemaddon.metrics;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Timings, result sizes and cache statistics of the search pipeline, shown by
+ * {@code /finditem stats} and optionally dumped in the Prometheus text format
+ */
+public class SearchMetrics {
+
+    private static final SearchMetrics instance = new SearchMetrics();
+    private static final String DUMP_FILE = "metrics.prom";
+
+    public final Histogram SCAN = Histogram.latency("finditem_search_scan_seconds", "Time spent matching shop snapshots against a search");
+    public final Histogram SORT = Histogram.latency("finditem_search_sort_seconds", "Time spent sorting the results of a search");
+    public final Histogram FILTER = Histogram.latency("finditem_search_filter_seconds", "Time spent filtering search results for a player");
+    public final Histogram GUI_BUILD = Histogram.latency("finditem_gui_build_seconds", "Time spent rendering one page of a results GUI");
+    public final Histogram OPEN = Histogram.latency("finditem_gui_open_seconds", "Time from opening a results GUI until it is shown");
+    public final Histogram RESULT_SIZE = Histogram.size("finditem_search_results", "Number of shops matching a search, before per-player filtering");
+    public final LongAdder COALESCED_SEARCHES = new LongAdder();
+
+    private final List<Histogram> histograms = List.of(SCAN, SORT, FILTER, GUI_BUILD, OPEN, RESULT_SIZE);
+    private final Map<String, Histogram> timings = new LinkedHashMap<>();
+    private final Map<String, Cache<?, ?>> caches = new ConcurrentSkipListMap<>();
+    private BukkitTask dumpTask;
+
+    private SearchMetrics() {
+        timings.put("Scan", SCAN);
+        timings.put("Sort", SORT);
+        timings.put("Filter", FILTER);
+        timings.put("GUI build", GUI_BUILD);
+        timings.put("Open", OPEN);
+    }
+
+    /**
+     * Registers a cache whose statistics should be reported. The cache must be built with {@code recordStats()}.
+     * Registering another cache under the same name replaces the previous one.
+     *
+     * @param name  The name to report the cache under
+     * @param cache The cache
+     */
+    public void registerCache(String name, Cache<?, ?> cache) {
+        caches.put(name, cache);
+    }
+
+    /**
+     * Formats the metrics for the stats command, one line per metric
+     *
+     * @return The lines, in MiniMessage format
+     */
+    public List<String> formatSummary() {
+        List<String> lines = new ArrayList<>();
+        lines.add("<#96eeff>Search timings <gray>(count, p50 / p95 / p99)");
+        timings.forEach((label, histogram) -> lines.add("<white>" + label + ": <gray>" + histogram.getCount() + ", "
+                + formatMillis(histogram.getQuantile(0.5)) + " / "
+                + formatMillis(histogram.getQuantile(0.95)) + " / "
+                + formatMillis(histogram.getQuantile(0.99))));
+        lines.add("<white>Result size: <gray>" + RESULT_SIZE.getCount() + ", "
+                + formatCount(RESULT_SIZE.getQuantile(0.5)) + " / "
+                + formatCount(RESULT_SIZE.getQuantile(0.95)) + " / "
+                + formatCount(RESULT_SIZE.getQuantile(0.99)));
+        lines.add("<white>Coalesced searches: <gray>" + COALESCED_SEARCHES.sum());
+
+        lines.add("<#96eeff>Caches <gray>(size, hit ratio, hits / misses / evictions)");
+        caches.forEach((name, cache) -> {
+            CacheStats stats = cache.stats();
+            lines.add("<white>" + name + ": <gray>" + cache.size() + ", "
+                    + String.format("%.1f%%", stats.hitRate() * 100) + ", "
+                    + stats.hitCount() + " / " + stats.missCount() + " / " + stats.evictionCount());
+        });
+        return lines;
+    }
+
+    /**
+     * Formats the metrics in the Prometheus text exposition format
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        histograms.forEach(histogram -> histogram.writePrometheus(out));
+
+        out.append("# HELP finditem_search_coalesced_total Searches that joined an identical search already running\n");
+        out.append("# TYPE finditem_search_coalesced_total counter\n");
+        out.append("finditem_search_coalesced_total ").append(COALESCED_SEARCHES.sum()).append('\n');
+
+        writeCacheMetric(out, "finditem_cache_hits_total", "counter", "Cache lookups that found a value", stats -> stats.hitCount());
+        writeCacheMetric(out, "finditem_cache_misses_total", "counter", "Cache lookups that found nothing", stats -> stats.missCount());
+        writeCacheMetric(out, "finditem_cache_evictions_total", "counter", "Cache entries evicted for size or age", stats -> stats.evictionCount());
+        out.append("# HELP finditem_cache_size Entries currently cached\n");
+        out.append("# TYPE finditem_cache_size gauge\n");
+        caches.forEach((name, cache) -> out.append("finditem_cache_size{cache=\"").append(name).append("\"} ").append(cache.size()).append('\n'));
+        return out.toString();
+    }
+
+    /**
+     * (Re)starts writing the Prometheus format to the plugin data folder every given number of seconds
+     *
+     * @param intervalSeconds The interval, or 0 to stop dumping
+     */
+    public synchronized void scheduleDump(int intervalSeconds) {
+        if (dumpTask != null) {
+            dumpTask.cancel();
+            dumpTask = null;
+        }
+        if (intervalSeconds <= 0) return;
+
+        long ticks = intervalSeconds * 20L;
+        dumpTask = Bukkit.getScheduler().runTaskTimerAsynchronously(FindItemAddOn.getInstance(), this::dump, ticks, ticks);
+    }
+
+    private void dump() {
+        File file = new File(FindItemAddOn.getInstance().getDataFolder(), DUMP_FILE);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.writeString(tmpFile.toPath(), this.toPrometheus(), StandardCharsets.UTF_8);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            FindItemAddOn.getInstance().getLogger().warning("Failed to write " + DUMP_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private void writeCacheMetric(StringBuilder out, String name, String type, String help, ToLongFunction<CacheStats> value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        caches.forEach((cacheName, cache) -> out.append(name).append("{cache=\"").append(cacheName).append("\"} ")
+                .append(value.applyAsLong(cache.stats())).append('\n'));
+    }
+
+    private static String formatMillis(double seconds) {
+        return Double.isInfinite(seconds) ? ">2500ms" : String.format("%.2fms", seconds * 1000);
+    }
+
+    private static String formatCount(double count) {
+        return Double.isInfinite(count) ? ">10000" : String.valueOf((long) count);
+    }
+
+    public static SearchMetrics getInstance() {
+        return instance;
+    }
+
+}
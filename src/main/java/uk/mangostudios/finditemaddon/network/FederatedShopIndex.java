@@ -0,0 +1,182 @@
+package uk.mangostudios.finditemaddon.network;
+
+import org.bukkit.Material;
+import uk.mangostudios.finditemaddon.index.ShopNameIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A read-only view of the shops of every other server in the network, merged from the deltas they publish,
+ * so searches can include them without asking those servers anything.
+ * <p>
+ * Deltas are applied by a single transport thread, while searches read from any thread.
+ */
+public class FederatedShopIndex {
+
+    private static FederatedShopIndex instance;
+
+    private final String localServer;
+    private final Map<String, RemoteServer> servers = new ConcurrentHashMap<>();
+
+    /**
+     * @param localServer The name of this server, deltas carrying it are ignored
+     */
+    public FederatedShopIndex(String localServer) {
+        this.localServer = localServer;
+        instance = this;
+    }
+
+    /**
+     * Merges a delta from another server. Deltas out of order are ignored, along with every later one
+     * from that server until its next full delta. Full deltas older than what is already merged are ignored too.
+     *
+     * @param delta The delta
+     */
+    public synchronized void apply(ShopIndexDelta delta) {
+        if (delta.server().equals(localServer)) return;
+        RemoteServer server = servers.get(delta.server());
+
+        if (delta.full()) {
+            // A stale or re-delivered full delta must not roll the server's shops back
+            if (server != null && (delta.epoch() < server.epoch
+                    || (delta.epoch() == server.epoch && delta.sequence() <= server.sequence))) {
+                return;
+            }
+            // Built aside and swapped in, so searches never see a half-applied snapshot
+            RemoteServer replacement = new RemoteServer(delta.epoch(), delta.sequence());
+            delta.upserts().forEach(replacement::add);
+            servers.put(delta.server(), replacement);
+            return;
+        }
+
+        if (server == null) return;
+        server.lastSeen = System.currentTimeMillis();
+        if (server.awaitingFull) return;
+        if (server.epoch != delta.epoch() || delta.sequence() != server.sequence + 1) {
+            if (server.epoch == delta.epoch() && delta.sequence() <= server.sequence) return; // Re-delivered
+            server.awaitingFull = true;
+            return;
+        }
+
+        server.sequence = delta.sequence();
+        delta.removals().forEach(server::remove);
+        delta.upserts().forEach(shop -> {
+            server.remove(shop.shopId());
+            server.add(shop);
+        });
+    }
+
+    /**
+     * Forgets the servers that haven't published anything for a while, e.g. because they went offline
+     *
+     * @param timeoutMillis How long a server may go without publishing
+     */
+    public void expire(long timeoutMillis) {
+        long cutoff = System.currentTimeMillis() - timeoutMillis;
+        servers.values().removeIf(server -> server.lastSeen < cutoff);
+    }
+
+    /**
+     * Finds the shops on other servers trading the given material
+     *
+     * @param material The material
+     * @param toBuy    Whether the player is buying, i.e. looking for selling shops
+     * @return The matches per server, in server name order; servers without matches are left out
+     */
+    public List<RemoteResults> searchByType(Material material, boolean toBuy) {
+        return this.search(server -> server.getShopsByType(material), shop -> true, toBuy);
+    }
+
+    /**
+     * Finds the shops on other servers whose normalised item name contains the query.
+     * Every remote shop is checked, which is cheap enough for the compact snapshots kept here.
+     *
+     * @param matcher The raw search query
+     * @param toBuy   Whether the player is buying, i.e. looking for selling shops
+     * @return The matches per server, in server name order; servers without matches are left out
+     */
+    public List<RemoteResults> searchByDisplayName(String matcher, boolean toBuy) {
+        String normalised = ShopNameIndex.normaliseQuery(matcher);
+        return this.search(server -> server.shops.values(), shop -> shop.itemName().contains(normalised), toBuy);
+    }
+
+    private List<RemoteResults> search(Function<RemoteServer, Iterable<RemoteShop>> candidates,
+                                       Predicate<RemoteShop> matches, boolean toBuy) {
+        List<RemoteResults> results = new ArrayList<>();
+        servers.forEach((name, server) -> {
+            int count = 0;
+            double bestPrice = toBuy ? Double.MAX_VALUE : 0;
+            for (RemoteShop shop : candidates.apply(server)) {
+                if (!(toBuy ? shop.selling() : shop.buying()) || shop.remainingStockOrSpace(toBuy) == 0 || !matches.test(shop)) {
+                    continue;
+                }
+                // Per player shop permissions can't be checked for another server's shops,
+                // so only the shops every player may search for are counted
+                if (!shop.searchable()) continue;
+                count++;
+                // Buyers are after the cheapest shop, sellers after the best paying one
+                bestPrice = toBuy ? Math.min(bestPrice, shop.price()) : Math.max(bestPrice, shop.price());
+            }
+            if (count > 0) results.add(new RemoteResults(name, count, bestPrice));
+        });
+        results.sort(Comparator.comparing(RemoteResults::server));
+        return results;
+    }
+
+    public static FederatedShopIndex getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param server    The server name
+     * @param shops     How many of its shops matched
+     * @param bestPrice The lowest price of the matches when buying, or the highest when selling
+     */
+    public record RemoteResults(String server, int shops, double bestPrice) {
+    }
+
+    private static class RemoteServer {
+
+        private final long epoch;
+        private final Map<Long, RemoteShop> shops = new ConcurrentHashMap<>();
+        private final Map<Material, Set<Long>> shopsByType = new ConcurrentHashMap<>();
+        private volatile long sequence;
+        private volatile long lastSeen = System.currentTimeMillis();
+        private volatile boolean awaitingFull;
+
+        private RemoteServer(long epoch, long sequence) {
+            this.epoch = epoch;
+            this.sequence = sequence;
+        }
+
+        private void add(RemoteShop shop) {
+            shops.put(shop.shopId(), shop);
+            shopsByType.computeIfAbsent(shop.material(), k -> ConcurrentHashMap.newKeySet()).add(shop.shopId());
+        }
+
+        private void remove(long shopId) {
+            RemoteShop shop = shops.remove(shopId);
+            if (shop == null) return;
+            Set<Long> ids = shopsByType.get(shop.material());
+            if (ids != null) ids.remove(shopId);
+        }
+
+        private Iterable<RemoteShop> getShopsByType(Material material) {
+            Set<Long> ids = shopsByType.getOrDefault(material, Set.of());
+            List<RemoteShop> matches = new ArrayList<>(ids.size());
+            for (Long shopId : ids) {
+                RemoteShop shop = shops.get(shopId);
+                if (shop != null) matches.add(shop);
+            }
+            return matches;
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package uk.mangostudios.finditemaddon.network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exchanges deltas through a directory shared by every server, e.g. on the same host or a network share.
+ * Meant for testing and small networks without a message broker.
+ * <p>
+ * Each server writes its deltas as gzipped JSON files into its own subdirectory, named so they sort in publishing
+ * order, and deletes its older files whenever it writes a full delta. The other subdirectories are polled for
+ * files newer than the last one read.
+ */
+public class FileShopIndexTransport implements ShopIndexTransport {
+
+    private static final String SUFFIX = ".json.gz";
+
+    private final Path directory;
+    private final String server;
+    private final Logger logger;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FindItemAddOn-FileShopIndexTransport");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Server name -> Name of the last file read from its subdirectory
+    private final Map<String, String> lastRead = new HashMap<>();
+
+    private volatile Consumer<ShopIndexDelta> listener;
+
+    /**
+     * @param directory          The directory shared by every server
+     * @param server             The name of this server, used as its subdirectory
+     * @param pollIntervalMillis How often the other servers' subdirectories are checked for new deltas
+     * @param logger             Where read and write failures are reported
+     */
+    public FileShopIndexTransport(Path directory, String server, long pollIntervalMillis, Logger logger) {
+        this.directory = directory;
+        this.server = server;
+        this.logger = logger;
+        executor.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void publish(ShopIndexDelta delta) {
+        Path serverDirectory = directory.resolve(server);
+        String fileName = String.format("%019d-%019d", delta.epoch(), delta.sequence()) + SUFFIX;
+        try {
+            Files.createDirectories(serverDirectory);
+            Path tempFile = serverDirectory.resolve(fileName + ".tmp");
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(tempFile)), StandardCharsets.UTF_8)))) {
+                delta.write(writer);
+            }
+            // Readers only pick up whole files
+            Files.move(tempFile, serverDirectory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // Everything before a full delta is superseded by it
+            if (delta.full()) {
+                for (String oldFile : listDeltaFiles(serverDirectory)) {
+                    if (oldFile.compareTo(fileName) < 0) Files.deleteIfExists(serverDirectory.resolve(oldFile));
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to publish shop index delta: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ShopIndexDelta> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        listener = null;
+        executor.shutdownNow();
+    }
+
+    private void poll() {
+        Consumer<ShopIndexDelta> listener = this.listener;
+        if (listener == null || !Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> serverDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path serverDirectory : serverDirectories) {
+                String remoteServer = serverDirectory.getFileName().toString();
+                if (remoteServer.equals(server)) continue;
+                this.readNewDeltas(remoteServer, serverDirectory, listener);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Failed to read shop index deltas: " + e.getMessage());
+        }
+    }
+
+    private void readNewDeltas(String remoteServer, Path serverDirectory, Consumer<ShopIndexDelta> listener) throws IOException {
+        String last = lastRead.get(remoteServer);
+        for (String fileName : listDeltaFiles(serverDirectory)) {
+            if (last != null && fileName.compareTo(last) <= 0) continue;
+            try (JsonReader reader = new JsonReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(serverDirectory.resolve(fileName))), StandardCharsets.UTF_8))) {
+                listener.accept(ShopIndexDelta.read(reader));
+            } catch (NoSuchFileException e) {
+                // Superseded by a full delta while listing, the gap is caught up on with that full delta
+            } catch (IOException | RuntimeException e) {
+                // Skipped rather than retried forever, the gap is caught up on with the next full delta
+                logger.warning("Skipping unreadable shop index delta " + remoteServer + "/" + fileName + ": " + e.getMessage());
+            }
+            lastRead.put(remoteServer, fileName);
+        }
+    }
+
+    /**
+     * @return The names of the delta files in a server's subdirectory, in publishing order
+     */
+    private static List<String> listDeltaFiles(Path serverDirectory) throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(serverDirectory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                fileNames.add(file.getFileName().toString());
+            }
+        }
+        fileNames.sort(null);
+        return fileNames;
+    }
+
+}
@@ -0,0 +1,54 @@
+package uk.mangostudios.finditemaddon.network;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Passes deltas straight to the other transports on the same channel within this JVM.
+ * Stands in for a real network when testing, e.g. several nodes in one load simulation.
+ */
+public class InProcessShopIndexTransport implements ShopIndexTransport {
+
+    private static final Map<String, Set<InProcessShopIndexTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private final String server;
+    private volatile Consumer<ShopIndexDelta> listener;
+
+    /**
+     * @param channel The channel shared by the nodes of one network
+     * @param server  The name of this node, its own deltas aren't delivered back to it
+     */
+    public InProcessShopIndexTransport(String channel, String server) {
+        this.channel = channel;
+        this.server = server;
+        CHANNELS.computeIfAbsent(channel, k -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void publish(ShopIndexDelta delta) {
+        for (InProcessShopIndexTransport transport : CHANNELS.getOrDefault(channel, Set.of())) {
+            if (transport != this) transport.deliver(delta);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ShopIndexDelta> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        Set<InProcessShopIndexTransport> transports = CHANNELS.get(channel);
+        if (transports != null) transports.remove(this);
+        listener = null;
+    }
+
+    private synchronized void deliver(ShopIndexDelta delta) {
+        Consumer<ShopIndexDelta> listener = this.listener;
+        if (listener != null && !delta.server().equals(server)) listener.accept(delta);
+    }
+
+}
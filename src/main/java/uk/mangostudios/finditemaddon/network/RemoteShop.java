@@ -0,0 +1,116 @@
+package uk.mangostudios.finditemaddon.network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.bukkit.Material;
+import org.jetbrains.annotations.Nullable;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * The compact form of a {@link ShopSnapshot} exchanged between servers. The traded item itself isn't sent,
+ * only its material and normalised display name, which is all remote searches match on.
+ *
+ * @param shopId         The shop id on the server it belongs to
+ * @param price          The price per item
+ * @param remainingStock The remaining stock, or 0 if the shop isn't selling
+ * @param remainingSpace The remaining space, or 0 if the shop isn't buying
+ * @param owner          The owner, or null if the shop has no player owner
+ * @param world          The name of the world the shop is in
+ * @param x              The block x of the shop container
+ * @param y              The block y of the shop container
+ * @param z              The block z of the shop container
+ * @param material       The traded material
+ * @param itemName       The normalised display name of the traded item
+ * @param selling        Whether the shop sells to players
+ * @param buying         Whether the shop buys from players
+ * @param searchable     Whether players outside the shop's groups may search for it
+ */
+public record RemoteShop(long shopId, double price, int remainingStock, int remainingSpace, @Nullable UUID owner,
+                         String world, int x, int y, int z, Material material, String itemName,
+                         boolean selling, boolean buying, boolean searchable) {
+
+    public static RemoteShop of(ShopSnapshot snapshot) {
+        return new RemoteShop(
+                snapshot.shopId(),
+                snapshot.price(),
+                snapshot.remainingStock(),
+                snapshot.remainingSpace(),
+                snapshot.owner(),
+                snapshot.location().getWorld().getName(),
+                snapshot.location().getBlockX(),
+                snapshot.location().getBlockY(),
+                snapshot.location().getBlockZ(),
+                snapshot.material(),
+                snapshot.itemName(),
+                snapshot.selling(),
+                snapshot.buying(),
+                snapshot.searchable()
+        );
+    }
+
+    public int remainingStockOrSpace(boolean toBuy) {
+        return toBuy ? remainingStock : remainingSpace;
+    }
+
+    void write(JsonWriter writer) throws IOException {
+        writer.beginObject()
+                .name("id").value(shopId)
+                .name("price").value(price)
+                .name("stock").value(remainingStock)
+                .name("space").value(remainingSpace);
+        if (owner != null) writer.name("owner").value(owner.toString());
+        writer.name("world").value(world)
+                .name("x").value(x)
+                .name("y").value(y)
+                .name("z").value(z)
+                .name("material").value(material.name())
+                .name("name").value(itemName)
+                .name("selling").value(selling)
+                .name("buying").value(buying)
+                .name("searchable").value(searchable)
+                .endObject();
+    }
+
+    /**
+     * @return The shop, or null if it trades a material this server doesn't know, e.g. from a newer version
+     */
+    static @Nullable RemoteShop read(JsonReader reader) throws IOException {
+        long shopId = 0;
+        double price = 0;
+        int remainingStock = 0, remainingSpace = 0, x = 0, y = 0, z = 0;
+        UUID owner = null;
+        String world = null, material = null, itemName = null;
+        boolean selling = false, buying = false;
+        // Servers on older versions don't send it, and didn't check it either
+        boolean searchable = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> shopId = reader.nextLong();
+                case "price" -> price = reader.nextDouble();
+                case "stock" -> remainingStock = reader.nextInt();
+                case "space" -> remainingSpace = reader.nextInt();
+                case "owner" -> owner = UUID.fromString(reader.nextString());
+                case "world" -> world = reader.nextString();
+                case "x" -> x = reader.nextInt();
+                case "y" -> y = reader.nextInt();
+                case "z" -> z = reader.nextInt();
+                case "material" -> material = reader.nextString();
+                case "name" -> itemName = reader.nextString();
+                case "selling" -> selling = reader.nextBoolean();
+                case "buying" -> buying = reader.nextBoolean();
+                case "searchable" -> searchable = reader.nextBoolean();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        Material type = material == null ? null : Material.getMaterial(material);
+        if (type == null || world == null || itemName == null) return null;
+        return new RemoteShop(shopId, price, remainingStock, remainingSpace, owner, world, x, y, z, type, itemName, selling, buying, searchable);
+    }
+
+}
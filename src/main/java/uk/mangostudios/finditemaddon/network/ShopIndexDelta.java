@@ -0,0 +1,83 @@
+package uk.mangostudios.finditemaddon.network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes to one server's shops since its previous delta.
+ * <p>
+ * Deltas from a server are numbered consecutively within an epoch, which changes whenever the server restarts.
+ * A receiver that sees a gap in the numbering ignores the server's deltas until its next full delta,
+ * which carries every shop and replaces whatever the receiver had.
+ *
+ * @param server   The name of the publishing server
+ * @param epoch    When the publishing server started publishing, in epoch milliseconds
+ * @param sequence The number of this delta within the epoch, starting at 0
+ * @param full     Whether this delta carries every shop of the server, rather than only the changed ones
+ * @param upserts  The shops that were added or changed, or every shop if full
+ * @param removals The ids of the shops that were removed, always empty if full
+ */
+public record ShopIndexDelta(String server, long epoch, long sequence, boolean full,
+                             List<RemoteShop> upserts, List<Long> removals) {
+
+    public void write(JsonWriter writer) throws IOException {
+        writer.beginObject()
+                .name("server").value(server)
+                .name("epoch").value(epoch)
+                .name("sequence").value(sequence)
+                .name("full").value(full);
+        writer.name("upserts").beginArray();
+        for (RemoteShop shop : upserts) {
+            shop.write(writer);
+        }
+        writer.endArray();
+        writer.name("removals").beginArray();
+        for (long shopId : removals) {
+            writer.value(shopId);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    public static ShopIndexDelta read(JsonReader reader) throws IOException {
+        String server = null;
+        long epoch = 0, sequence = 0;
+        boolean full = false;
+        List<RemoteShop> upserts = new ArrayList<>();
+        List<Long> removals = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "server" -> server = reader.nextString();
+                case "epoch" -> epoch = reader.nextLong();
+                case "sequence" -> sequence = reader.nextLong();
+                case "full" -> full = reader.nextBoolean();
+                case "upserts" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        RemoteShop shop = RemoteShop.read(reader);
+                        if (shop != null) upserts.add(shop);
+                    }
+                    reader.endArray();
+                }
+                case "removals" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        removals.add(reader.nextLong());
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (server == null) throw new IOException("Shop index delta has no server name");
+        return new ShopIndexDelta(server, epoch, sequence, full, upserts, removals);
+    }
+
+}
@@ -0,0 +1,79 @@
+package uk.mangostudios.finditemaddon.network;
+
+import org.bukkit.World;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+import uk.mangostudios.finditemaddon.cache.HiddenShopsCache;
+import uk.mangostudios.finditemaddon.index.ShopSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Publishes this server's shops as deltas, by comparing the indexed snapshots against what was published last time.
+ * Diffing the snapshots rather than hooking every index update keeps the publishing rate fixed,
+ * however often shops change.
+ */
+public class ShopIndexPublisher {
+
+    private final ShopIndexTransport transport;
+    private final String server;
+    private final Supplier<Collection<ShopSnapshot>> snapshots;
+    private final long fullIntervalMillis;
+    private final long epoch = System.currentTimeMillis();
+    // Shop id -> What the other servers were last told about it
+    private Map<Long, RemoteShop> published = new HashMap<>();
+    private long sequence = -1;
+    private long lastFull;
+
+    /**
+     * @param transport          Where deltas are published
+     * @param server             The name of this server
+     * @param snapshots          Supplies the currently indexed shops, safe to iterate off the main thread
+     * @param fullIntervalMillis How often every shop is published, so servers that missed a delta catch up
+     */
+    public ShopIndexPublisher(ShopIndexTransport transport, String server, Supplier<Collection<ShopSnapshot>> snapshots, long fullIntervalMillis) {
+        this.transport = transport;
+        this.server = server;
+        this.snapshots = snapshots;
+        this.fullIntervalMillis = fullIntervalMillis;
+    }
+
+    /**
+     * Publishes the shops that changed since the last call, or every shop if a full delta is due.
+     * An empty delta is still published, so other servers know this one is online. Call from a background thread.
+     */
+    public synchronized void publish() {
+        Map<Long, RemoteShop> current = new HashMap<>();
+        List<World> blacklistedWorlds = FindItemAddOn.getConfigProvider().getBlacklistedWorlds();
+        for (ShopSnapshot snapshot : snapshots.get()) {
+            // Shops in blacklisted worlds and hidden shops don't show up in local searches either
+            if (snapshot.location().getWorld() == null || blacklistedWorlds.contains(snapshot.location().getWorld())) continue;
+            if (snapshot.owner() != null && HiddenShopsCache.getInstance().isShopHidden(snapshot.owner(), snapshot.location())) continue;
+            current.put(snapshot.shopId(), RemoteShop.of(snapshot));
+        }
+
+        long now = System.currentTimeMillis();
+        boolean full = sequence < 0 || now - lastFull >= fullIntervalMillis;
+        List<RemoteShop> upserts = new ArrayList<>();
+        List<Long> removals = new ArrayList<>();
+        if (full) {
+            upserts.addAll(current.values());
+            lastFull = now;
+        } else {
+            current.forEach((shopId, shop) -> {
+                if (!shop.equals(published.get(shopId))) upserts.add(shop);
+            });
+            published.keySet().forEach(shopId -> {
+                if (!current.containsKey(shopId)) removals.add(shopId);
+            });
+        }
+
+        transport.publish(new ShopIndexDelta(server, epoch, ++sequence, full, upserts, removals));
+        published = current;
+    }
+
+}
@@ -0,0 +1,32 @@
+package uk.mangostudios.finditemaddon.network;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries shop index deltas between the servers of a network. Implementations only have to deliver deltas,
+ * ordering and gaps are dealt with by {@link FederatedShopIndex}, so a transport may drop or
+ * re-deliver deltas, e.g. after a reconnect.
+ */
+public interface ShopIndexTransport {
+
+    /**
+     * Sends a delta to every other server. Called from a background thread, and may block.
+     *
+     * @param delta The delta of this server
+     */
+    void publish(ShopIndexDelta delta);
+
+    /**
+     * Registers the listener deltas of other servers are passed to, in the order they were published.
+     * The listener may be called from any thread, but never from several at once.
+     *
+     * @param listener The listener
+     */
+    void subscribe(Consumer<ShopIndexDelta> listener);
+
+    /**
+     * Stops delivering deltas and releases any resources
+     */
+    void close();
+
+}
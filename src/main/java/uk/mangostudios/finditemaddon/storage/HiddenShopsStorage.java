@@ -1,89 +1,330 @@
 package uk.mangostudios.finditemaddon.storage;
 
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import uk.mangostudios.finditemaddon.FindItemAddOn;
 import uk.mangostudios.finditemaddon.storage.impl.FinePosition;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 
+/**
+ * Persists hidden shops as a snapshot ({@code userdata.json}) plus an append-only journal
+ * of the hide/unhide operations made since that snapshot.
+ * <p>
+ * Each operation is appended as one JSON line and flushed to disk within {@link #FLUSH_INTERVAL_SECONDS},
+ * and the journal is periodically compacted into a fresh snapshot. On startup the snapshot is loaded
+ * and the journal replayed on top of it. All file access happens on a single background thread,
+ * so operations are written in the order they were made.
+ */
 public class HiddenShopsStorage {
 
+    private static final long FLUSH_INTERVAL_SECONDS = 2;
+    private static final long COMPACT_INTERVAL_MINUTES = 5;
+
     private static HiddenShopsStorage instance;
-    private final FindItemAddOn plugin;
+    private final Logger logger;
+    private final File snapshotFile;
+    private final File journalFile;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FindItemAddOn-HiddenShopsStorage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Supplier<Map<UUID, List<FinePosition>>> snapshotSupplier;
+    private FileOutputStream journalStream;
+    private Writer journalWriter;
+    private int journalEntries = 0;
 
     public HiddenShopsStorage(FindItemAddOn plugin) {
-        this.plugin = plugin;
+        this(plugin.getDataFolder(), plugin.getLogger());
+    }
+
+    /**
+     * @param dataFolder Where the snapshot and journal are kept, under "data"
+     * @param logger     Where read and write failures are reported
+     */
+    public HiddenShopsStorage(File dataFolder, Logger logger) {
+        this.logger = logger;
+        this.snapshotFile = new File(dataFolder.getAbsolutePath() + "/data/userdata.json");
+        this.journalFile = new File(dataFolder.getAbsolutePath() + "/data/userdata.journal");
         instance = this;
     }
 
     /**
-     * Save all users to the JSON file
+     * Starts the periodic journal flush and compaction
+     *
+     * @param snapshotSupplier Supplies the current hidden shops when compacting
      */
-    public CompletableFuture<Void> saveAll(Map<UUID, List<FinePosition>> hiddenUsers) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                final File file = new File(plugin.getDataFolder().getAbsolutePath() + "/data/userdata.json");
+    public void start(Supplier<Map<UUID, List<FinePosition>>> snapshotSupplier) {
+        this.snapshotSupplier = snapshotSupplier;
+        executor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(this::compact, COMPACT_INTERVAL_MINUTES, COMPACT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
 
-                if (!file.exists()) {
-                    file.getParentFile().mkdir(); // Creates the /data/
-                    file.createNewFile(); // Creates the /data/userdata.json
-                }
+    public void journalHide(UUID owner, String world, int x, int y, int z) {
+        this.append(writer -> writePosition(writer.name("op").value("hide").name("owner").value(owner.toString()), world, x, y, z));
+    }
 
-                if (hiddenUsers != null) {
-                    final Writer writer = new FileWriter(file, false);
-                    gson.toJson(hiddenUsers, writer);
-                    writer.flush();
-                    writer.close();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+    public void journalUnhide(UUID owner, String world, int x, int y, int z) {
+        this.append(writer -> writePosition(writer.name("op").value("unhide").name("owner").value(owner.toString()), world, x, y, z));
+    }
+
+    /**
+     * Journals hiding many shops of one owner as a single entry
+     */
+    public void journalHideAll(UUID owner, List<FinePosition> positions) {
+        if (positions.isEmpty()) return;
+        List<FinePosition> copy = List.copyOf(positions);
+        this.append(writer -> {
+            writer.name("op").value("hide-all").name("owner").value(owner.toString()).name("positions").beginArray();
+            for (FinePosition position : copy) {
+                writer.beginObject();
+                writePosition(writer, position.world(), position.blockX(), position.blockY(), position.blockZ());
+                writer.endObject();
             }
+            writer.endArray();
         });
     }
 
+    public void journalUnhideAll(UUID owner) {
+        this.append(writer -> writer.name("op").value("unhide-all").name("owner").value(owner.toString()));
+    }
+
     /**
-     * Load all hidden users from the JSON file
+     * Flushes the journal, writes a final snapshot and stops the background thread.
+     * Blocks until done, so nothing is lost when the server shuts down.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for hidden shops journal writes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.compact();
+        this.closeJournal();
+    }
+
+    /**
+     * Load all hidden shops from the snapshot, and replay the journal on top of it
      */
     public CompletableFuture<Map<UUID, List<FinePosition>>> load() {
         return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, Set<FinePosition>> hiddenUsers = new HashMap<>();
             try {
-                final Gson gson = new Gson();
-                final File file = new File(plugin.getDataFolder().getAbsolutePath() + "/data/userdata.json");
+                if (snapshotFile.exists()) readSnapshot(hiddenUsers);
+                if (journalFile.exists()) replayJournal(hiddenUsers);
+            } catch (IOException | RuntimeException e) {
+                logger.severe("Failed to load hidden shops: " + e.getMessage());
+                e.printStackTrace();
+            }
 
-                if (!file.exists()) {
-                    file.getParentFile().mkdir(); // Creates the /data/
-                    file.createNewFile(); // Creates the /data/userdata.json
+            Map<UUID, List<FinePosition>> loaded = new HashMap<>();
+            hiddenUsers.forEach((owner, positions) -> loaded.put(owner, new ArrayList<>(positions)));
+            return loaded;
+        }, executor);
+    }
+
+    private void append(JournalEntry entry) {
+        executor.execute(() -> {
+            try {
+                StringWriter line = new StringWriter();
+                JsonWriter writer = new JsonWriter(line);
+                writer.beginObject();
+                entry.write(writer);
+                writer.endObject();
+                writer.close();
+
+                this.openJournal().write(line + "\n");
+                journalEntries++;
+            } catch (IOException e) {
+                logger.severe("Failed to write to the hidden shops journal: " + e.getMessage());
+            }
+        });
+    }
+
+    private void flush() {
+        if (journalWriter == null) return;
+        try {
+            journalWriter.flush();
+            journalStream.getFD().sync();
+        } catch (IOException e) {
+            logger.severe("Failed to flush the hidden shops journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the current hidden shops to a new snapshot and truncates the journal.
+     * Journal entries queued after the snapshot was taken are re-applied on replay, which is harmless
+     * as every operation is idempotent.
+     */
+    private void compact() {
+        if (snapshotSupplier == null || (journalEntries == 0 && snapshotFile.exists())) return;
+        try {
+            File tempFile = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+            snapshotFile.getParentFile().mkdirs();
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)))) {
+                writer.beginObject();
+                for (Map.Entry<UUID, List<FinePosition>> entry : snapshotSupplier.get().entrySet()) {
+                    writer.name(entry.getKey().toString()).beginArray();
+                    for (FinePosition position : entry.getValue()) {
+                        writer.beginObject();
+                        writePosition(writer, position.world(), position.blockX(), position.blockY(), position.blockZ());
+                        writer.endObject();
+                    }
+                    writer.endArray();
                 }
+                writer.endObject();
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            this.closeJournal();
+            Files.deleteIfExists(journalFile.toPath());
+            journalEntries = 0;
+        } catch (IOException e) {
+            logger.severe("Failed to compact hidden shops: " + e.getMessage());
+        }
+    }
+
+    private Writer openJournal() throws IOException {
+        if (journalWriter == null) {
+            journalFile.getParentFile().mkdirs();
+            journalStream = new FileOutputStream(journalFile, true);
+            journalWriter = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+        }
+        return journalWriter;
+    }
+
+    private void closeJournal() {
+        if (journalWriter == null) return;
+        try {
+            journalWriter.flush();
+            journalStream.getFD().sync();
+            journalWriter.close();
+        } catch (IOException e) {
+            logger.severe("Failed to close the hidden shops journal: " + e.getMessage());
+        }
+        journalWriter = null;
+        journalStream = null;
+    }
+
+    private void readSnapshot(Map<UUID, Set<FinePosition>> hiddenUsers) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(snapshotFile.toPath(), StandardCharsets.UTF_8))) {
+            // Empty file from older versions
+            if (reader.peek() == JsonToken.END_DOCUMENT) return;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                Set<FinePosition> positions = hiddenUsers.computeIfAbsent(UUID.fromString(reader.nextName()), k -> new LinkedHashSet<>());
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    positions.add(readPosition(reader).position());
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+    }
 
-                if (file.exists()) {
-                    final Reader reader = new FileReader(file);
-                    final TypeToken<Map<UUID, List<FinePosition>>> typeToken = new TypeToken<>() {
-                    };
-                    final Map<UUID, List<FinePosition>> hiddenUsers = gson.fromJson(reader, typeToken.getType());
-                    if (hiddenUsers != null) {
-                        return hiddenUsers;
+    private void replayJournal(Map<UUID, Set<FinePosition>> hiddenUsers) throws IOException {
+        try (BufferedReader lines = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JournalLine entry;
+                try (JsonReader reader = new JsonReader(new StringReader(line))) {
+                    entry = readPosition(reader);
+                } catch (IOException | RuntimeException e) {
+                    // A torn final line from a crash, everything before it is intact
+                    logger.warning("Skipping unreadable hidden shops journal entry: " + line);
+                    continue;
+                }
+
+                switch (entry.op()) {
+                    case "hide" -> hiddenUsers.computeIfAbsent(entry.owner(), k -> new LinkedHashSet<>()).add(entry.position());
+                    case "hide-all" -> hiddenUsers.computeIfAbsent(entry.owner(), k -> new LinkedHashSet<>()).addAll(entry.positions());
+                    case "unhide" -> {
+                        Set<FinePosition> positions = hiddenUsers.get(entry.owner());
+                        if (positions != null) positions.remove(entry.position());
                     }
+                    case "unhide-all" -> hiddenUsers.remove(entry.owner());
+                    default -> logger.warning("Unknown hidden shops journal operation: " + entry.op());
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
+                journalEntries++;
             }
-            return null;
-        });
+        }
+    }
+
+    private static JsonWriter writePosition(JsonWriter writer, String world, int x, int y, int z) throws IOException {
+        return writer.name("x").value(x).name("y").value(y).name("z").value(z).name("world").value(world);
+    }
+
+    private static JournalLine readPosition(JsonReader reader) throws IOException {
+        String op = null;
+        UUID owner = null;
+        String world = null;
+        double x = 0, y = 0, z = 0;
+        List<FinePosition> positions = List.of();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "op" -> op = reader.nextString();
+                case "owner" -> owner = UUID.fromString(reader.nextString());
+                case "world" -> world = reader.nextString();
+                case "x" -> x = reader.nextDouble();
+                case "y" -> y = reader.nextDouble();
+                case "z" -> z = reader.nextDouble();
+                case "positions" -> {
+                    positions = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        positions.add(readPosition(reader).position());
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new JournalLine(op, owner, new FinePosition(Math.floor(x), Math.floor(y), Math.floor(z), world), positions);
     }
 
     public static HiddenShopsStorage get() {
         return instance;
     }
+
+    @FunctionalInterface
+    private interface JournalEntry {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    private record JournalLine(String op, UUID owner, FinePosition position, List<FinePosition> positions) {
+    }
 }
@@ -0,0 +1,118 @@
+package uk.mangostudios.finditemaddon.util;
+
+import org.bukkit.Material;
+import org.bukkit.Tag;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * How safe each block type is to teleport into, onto or through, as bit flags in a table indexed by
+ * {@link Material#ordinal()}, so a safe spot search costs one array read per probed block.
+ * <p>
+ * The table is built once and never modified after being published, so it can be read from any thread,
+ * e.g. by searches over {@link org.bukkit.ChunkSnapshot} block types.
+ */
+public final class BlockSafety {
+
+    public static final byte DAMAGING = 1;
+    // Excluding chests, to prevent teleporting into them
+    public static final byte NON_SUFFOCATING = 1 << 1;
+    // No collision, e.g. air, flowers and wall signs
+    public static final byte PASSABLE = 1 << 2;
+    public static final byte SOLID = 1 << 3;
+    public static final byte SLAB = 1 << 4;
+    public static final byte WALL_SIGN = 1 << 5;
+    // Air, cave air and void air
+    public static final byte AIR = 1 << 6;
+    // The sign material QuickShop puts on shops
+    public static final byte SHOP_SIGN = (byte) (1 << 7);
+
+    private static volatile byte[] flags = build(null);
+
+    private BlockSafety() {
+    }
+
+    /**
+     * Rebuilds the table, e.g. once QuickShop is loaded and its shop sign material is known
+     *
+     * @param shopSignMaterial The shop sign material, or null if not known yet
+     */
+    public static void rebuild(@Nullable Material shopSignMaterial) {
+        flags = build(shopSignMaterial);
+    }
+
+    /**
+     * Checks whether a block type has any of the given flags
+     *
+     * @param type The block type
+     * @param mask One or more flags
+     * @return If any of the flags are set
+     */
+    public static boolean is(Material type, int mask) {
+        return (flags[type.ordinal()] & mask) != 0;
+    }
+
+    private static byte[] build(@Nullable Material shopSignMaterial) {
+        Set<Material> damaging = EnumSet.of(
+                Material.LAVA, Material.CACTUS, Material.CAMPFIRE, Material.SOUL_CAMPFIRE,
+                Material.MAGMA_BLOCK, Material.FIRE, Material.SOUL_FIRE, Material.SWEET_BERRY_BUSH,
+                Material.WITHER_ROSE, Material.END_PORTAL
+        );
+
+        Set<Material> nonSuffocating = EnumSet.of(Material.AIR);
+        // Stained Glass
+        nonSuffocating.addAll(Arrays.asList(
+                Material.WHITE_STAINED_GLASS, Material.ORANGE_STAINED_GLASS, Material.MAGENTA_STAINED_GLASS,
+                Material.LIGHT_BLUE_STAINED_GLASS, Material.YELLOW_STAINED_GLASS, Material.LIME_STAINED_GLASS,
+                Material.PINK_STAINED_GLASS, Material.GRAY_STAINED_GLASS, Material.LIGHT_GRAY_STAINED_GLASS,
+                Material.CYAN_STAINED_GLASS, Material.PURPLE_STAINED_GLASS, Material.BLUE_STAINED_GLASS,
+                Material.BROWN_STAINED_GLASS, Material.GREEN_STAINED_GLASS, Material.RED_STAINED_GLASS,
+                Material.BLACK_STAINED_GLASS
+        ));
+        // Stained Glass Panes
+        nonSuffocating.addAll(Arrays.asList(
+                Material.WHITE_STAINED_GLASS_PANE, Material.ORANGE_STAINED_GLASS_PANE, Material.MAGENTA_STAINED_GLASS_PANE,
+                Material.LIGHT_BLUE_STAINED_GLASS_PANE, Material.YELLOW_STAINED_GLASS_PANE, Material.LIME_STAINED_GLASS_PANE,
+                Material.PINK_STAINED_GLASS_PANE, Material.GRAY_STAINED_GLASS_PANE, Material.LIGHT_GRAY_STAINED_GLASS_PANE,
+                Material.CYAN_STAINED_GLASS_PANE, Material.PURPLE_STAINED_GLASS_PANE, Material.BLUE_STAINED_GLASS_PANE,
+                Material.BROWN_STAINED_GLASS_PANE, Material.GREEN_STAINED_GLASS_PANE, Material.RED_STAINED_GLASS_PANE,
+                Material.BLACK_STAINED_GLASS_PANE
+        ));
+        // Leaves (includes Azalea leaves in 1.21)
+        nonSuffocating.addAll(Tag.LEAVES.getValues());
+        nonSuffocating.addAll(Arrays.asList(Material.AZALEA_LEAVES, Material.FLOWERING_AZALEA_LEAVES));
+        nonSuffocating.addAll(Tag.SLABS.getValues());
+        nonSuffocating.addAll(Tag.WALL_SIGNS.getValues());
+        nonSuffocating.addAll(Tag.STAIRS.getValues());
+        // Miscellaneous non-suffocating blocks (excluding chests)
+        nonSuffocating.addAll(Arrays.asList(
+                Material.HONEY_BLOCK, Material.BELL, Material.HOPPER, Material.COMPOSTER,
+                Material.GRINDSTONE, Material.STONECUTTER, Material.IRON_BARS,
+                Material.END_PORTAL_FRAME, Material.PISTON_HEAD
+        ));
+
+        byte[] table = new byte[Material.values().length];
+        for (Material material : Material.values()) {
+            // Only modern block types are ever read back from the world
+            if (material.isLegacy() || !material.isBlock()) continue;
+            int entry = 0;
+            if (damaging.contains(material)) entry |= DAMAGING;
+            if (nonSuffocating.contains(material)) entry |= NON_SUFFOCATING;
+            if (material.isSolid()) {
+                entry |= SOLID;
+            } else {
+                entry |= PASSABLE;
+            }
+            if (Tag.SLABS.isTagged(material)) entry |= SLAB;
+            if (Tag.WALL_SIGNS.isTagged(material)) entry |= WALL_SIGN;
+            if (material.isAir()) entry |= AIR;
+            if (material == shopSignMaterial) entry |= SHOP_SIGN;
+            table[material.ordinal()] = (byte) entry;
+        }
+        return table;
+    }
+
+}
@@ -0,0 +1,52 @@
+package uk.mangostudios.finditemaddon.util;
+
+import org.bukkit.Bukkit;
+import uk.mangostudios.finditemaddon.FindItemAddOn;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Visits a list of entries on the main thread in slices, spending at most the configured
+ * budget per tick, so scans over every shop never stall a single tick.
+ */
+public final class BudgetedScanner {
+
+    private BudgetedScanner() {
+    }
+
+    /**
+     * Starts visiting the entries from the next tick onwards
+     *
+     * @param entries The entries to visit; should not change while the scan runs
+     * @param visitor Called on the main thread for each entry, in order
+     * @return Completes on the main thread once every entry has been visited, or exceptionally if the visitor throws
+     */
+    public static <T> CompletableFuture<Void> scan(List<T> entries, Consumer<T> visitor) {
+        long budgetNanos = Math.max(1, FindItemAddOn.getConfigProvider().SCAN_TICK_BUDGET_MS) * 1_000_000L;
+        Iterator<T> iterator = entries.iterator();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Bukkit.getScheduler().runTaskTimer(FindItemAddOn.getInstance(), scanTask -> {
+            long deadline = System.nanoTime() + budgetNanos;
+            try {
+                // Always make some progress, even if the budget is smaller than one entry
+                do {
+                    if (!iterator.hasNext()) {
+                        scanTask.cancel();
+                        future.complete(null);
+                        return;
+                    }
+                    visitor.accept(iterator.next());
+                } while (System.nanoTime() < deadline);
+            } catch (Throwable throwable) {
+                scanTask.cancel();
+                future.completeExceptionally(throwable);
+            }
+        }, 0L, 1L);
+        return future;
+    }
+
+}
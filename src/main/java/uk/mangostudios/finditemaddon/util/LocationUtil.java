@@ -2,15 +2,10 @@ package uk.mangostudios.finditemaddon.util;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.Tag;
 import org.bukkit.World;
-import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.type.Slab;
 import org.jetbrains.annotations.Nullable;
-import uk.mangostudios.finditemaddon.FindItemAddOn;
-
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Utility class for handling location-related operations in the FindItemAddOn plugin.
@@ -18,107 +13,48 @@ import java.util.Set;
  */
 public class LocationUtil {
 
-    private static final Set<Material> DAMAGING_BLOCKS = new HashSet<>();
-    private static final Set<Material> NON_SUFFOCATING_BLOCKS = new HashSet<>();
-    private static final int MAX_DOWNWARD_SEARCH_LIMIT = 20;
+    public static final int MAX_DOWNWARD_SEARCH_LIMIT = 20;
     private static final int[][] ADJACENT_OFFSETS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
 
-    static {
-        // Damaging blocks
-        DAMAGING_BLOCKS.addAll(Arrays.asList(
-                Material.LAVA, Material.CACTUS, Material.CAMPFIRE, Material.SOUL_CAMPFIRE,
-                Material.MAGMA_BLOCK, Material.FIRE, Material.SOUL_FIRE, Material.SWEET_BERRY_BUSH,
-                Material.WITHER_ROSE, Material.END_PORTAL
-        ));
-
-        // Non-suffocating blocks (excluding chests to prevent teleporting into them)
-        NON_SUFFOCATING_BLOCKS.add(Material.AIR);
-
-        // Stained Glass
-        NON_SUFFOCATING_BLOCKS.addAll(Arrays.asList(
-                Material.WHITE_STAINED_GLASS, Material.ORANGE_STAINED_GLASS, Material.MAGENTA_STAINED_GLASS,
-                Material.LIGHT_BLUE_STAINED_GLASS, Material.YELLOW_STAINED_GLASS, Material.LIME_STAINED_GLASS,
-                Material.PINK_STAINED_GLASS, Material.GRAY_STAINED_GLASS, Material.LIGHT_GRAY_STAINED_GLASS,
-                Material.CYAN_STAINED_GLASS, Material.PURPLE_STAINED_GLASS, Material.BLUE_STAINED_GLASS,
-                Material.BROWN_STAINED_GLASS, Material.GREEN_STAINED_GLASS, Material.RED_STAINED_GLASS,
-                Material.BLACK_STAINED_GLASS
-        ));
-
-        // Stained Glass Panes
-        NON_SUFFOCATING_BLOCKS.addAll(Arrays.asList(
-                Material.WHITE_STAINED_GLASS_PANE, Material.ORANGE_STAINED_GLASS_PANE, Material.MAGENTA_STAINED_GLASS_PANE,
-                Material.LIGHT_BLUE_STAINED_GLASS_PANE, Material.YELLOW_STAINED_GLASS_PANE, Material.LIME_STAINED_GLASS_PANE,
-                Material.PINK_STAINED_GLASS_PANE, Material.GRAY_STAINED_GLASS_PANE, Material.LIGHT_GRAY_STAINED_GLASS_PANE,
-                Material.CYAN_STAINED_GLASS_PANE, Material.PURPLE_STAINED_GLASS_PANE, Material.BLUE_STAINED_GLASS_PANE,
-                Material.BROWN_STAINED_GLASS_PANE, Material.GREEN_STAINED_GLASS_PANE, Material.RED_STAINED_GLASS_PANE,
-                Material.BLACK_STAINED_GLASS_PANE
-        ));
-
-        // Leaves (includes Azalea leaves in 1.21)
-        NON_SUFFOCATING_BLOCKS.addAll(Tag.LEAVES.getValues());
-        NON_SUFFOCATING_BLOCKS.addAll(Arrays.asList(
-                Material.AZALEA_LEAVES, Material.FLOWERING_AZALEA_LEAVES
-        ));
-
-        // Slabs
-        NON_SUFFOCATING_BLOCKS.addAll(Tag.SLABS.getValues());
-
-        // Wall Signs
-        NON_SUFFOCATING_BLOCKS.addAll(Tag.WALL_SIGNS.getValues());
-
-        // Stairs
-        NON_SUFFOCATING_BLOCKS.addAll(Tag.STAIRS.getValues());
-
-        // Miscellaneous non-suffocating blocks (excluding chests)
-        NON_SUFFOCATING_BLOCKS.addAll(Arrays.asList(
-                Material.HONEY_BLOCK, Material.BELL, Material.HOPPER, Material.COMPOSTER,
-                Material.GRINDSTONE, Material.STONECUTTER, Material.IRON_BARS,
-                Material.END_PORTAL_FRAME, Material.PISTON_HEAD
-        ));
-    }
-
     /**
      * Finds a safe location around a shop for player teleportation.
      * Checks adjacent blocks to ensure the location is non-damaging, non-suffocating, and clear.
+     * Safe to call from any thread if the reader is.
      *
      * @param shopLocation The location of the shop block.
+     * @param blocks       Reads the blocks around the shop, e.g. from chunk snapshots.
      * @return A safe Location for teleportation, or null if none is found.
      */
     @Nullable
-    public static Location findSafeLocationAroundShop(Location shopLocation) {
-        if (!isValidShopLocation(shopLocation)) {
-            return null;
-        }
-
+    public static Location findSafeLocationAroundShop(Location shopLocation, BlockReader blocks) {
         Location roundedShopLocation = getRoundedDestination(shopLocation);
+        int shopX = roundedShopLocation.getBlockX();
+        int shopY = roundedShopLocation.getBlockY();
+        int shopZ = roundedShopLocation.getBlockZ();
 
         for (int[] offset : ADJACENT_OFFSETS) {
-            Location candidate = new Location(
-                    roundedShopLocation.getWorld(),
-                    roundedShopLocation.getX() + offset[0],
-                    roundedShopLocation.getY(),
-                    roundedShopLocation.getZ() + offset[1]
-            );
+            int x = shopX + offset[0];
+            int z = shopZ + offset[1];
 
             // Check if the feet position is clear (AIR or WALL_SIGN)
-            Material feetMaterial = candidate.getBlock().getType();
-            if (feetMaterial != Material.AIR && !Tag.WALL_SIGNS.isTagged(feetMaterial)) {
+            Material feetMaterial = blocks.getType(x, shopY, z);
+            if (feetMaterial != Material.AIR && !BlockSafety.is(feetMaterial, BlockSafety.WALL_SIGN)) {
                 continue;
             }
 
             // Check if the head position is non-suffocating and provides clearance
-            Location headPosition = candidate.clone().add(0, 1, 0);
-            Block headBlock = headPosition.getBlock();
-            if (isBlockSuffocating(headPosition) || !isBlockPassable(headBlock)) {
+            Material headMaterial = blocks.getType(x, shopY + 1, z);
+            if (!BlockSafety.is(headMaterial, BlockSafety.NON_SUFFOCATING) || !isBlockPassable(blocks, x, shopY + 1, z, headMaterial)) {
                 continue;
             }
 
             // Search for a safe block below
-            Location safeLocation = findSafeBlockBelow(candidate);
-            if (safeLocation == null) {
+            Integer standingY = findSafeBlockBelow(blocks, x, shopY, z);
+            if (standingY == null) {
                 continue;
             }
 
+            Location safeLocation = new Location(roundedShopLocation.getWorld(), x + 0.5, standingY, z + 0.5);
             return orientPlayer(safeLocation, roundedShopLocation);
         }
 
@@ -126,28 +62,23 @@ public class LocationUtil {
     }
 
     /**
-     * Searches for a safe block below the given location within a limit.
+     * Searches for a safe block below the given position within a limit.
      *
-     * @param startLoc The starting location to check below.
-     * @return A safe Location above a solid, non-damaging block, or null if none found.
+     * @return The Y to stand at, above a solid, non-damaging block, or null if none found.
      */
     @Nullable
-    private static Location findSafeBlockBelow(Location startLoc) {
-        Location currentLoc = startLoc.clone();
+    private static Integer findSafeBlockBelow(BlockReader blocks, int x, int startY, int z) {
         for (int i = 1; i <= MAX_DOWNWARD_SEARCH_LIMIT; i++) {
-            currentLoc.setY(startLoc.getY() - i);
-            Block blockBelow = currentLoc.getBlock();
-            Material blockType = blockBelow.getType();
+            Material blockType = blocks.getType(x, startY - i, z);
 
             // Skip air or shop sign blocks
-            if (isAirOrShopSign(blockType)) {
+            if (BlockSafety.is(blockType, BlockSafety.AIR | BlockSafety.SHOP_SIGN)) {
                 continue;
             }
 
             // Ensure the block is non-damaging and solid
-            if (!DAMAGING_BLOCKS.contains(blockType) && blockBelow.isSolid()) {
-                currentLoc.setY(currentLoc.getY() + 1);
-                return getRoundedDestination(currentLoc);
+            if (!BlockSafety.is(blockType, BlockSafety.DAMAGING) && BlockSafety.is(blockType, BlockSafety.SOLID)) {
+                return startY - i + 1;
             }
 
             break;
@@ -155,54 +86,19 @@ public class LocationUtil {
         return null;
     }
 
-    /**
-     * Checks if the block type is air or a shop sign.
-     *
-     * @param type The material type to check.
-     * @return True if the block is air or a shop sign.
-     */
-    private static boolean isAirOrShopSign(Material type) {
-        return type == Material.AIR ||
-                type == Material.CAVE_AIR ||
-                type == Material.VOID_AIR ||
-                type == FindItemAddOn.getQsApiInstance().getShopSignMaterial();
-    }
-
-    /**
-     * Checks if a block at the given location is suffocating.
-     *
-     * @param loc The location to check.
-     * @return True if the block is suffocating (not in non-suffocating blocks list).
-     */
-    private static boolean isBlockSuffocating(Location loc) {
-        return !NON_SUFFOCATING_BLOCKS.contains(loc.getBlock().getType());
-    }
-
     /**
      * Checks if a block is passable and provides enough clearance for the player's head.
+     * Blocks without collision are treated as passable, which needs no live block.
      *
-     * @param block The block to check.
      * @return True if the block is passable (e.g., not a bottom slab).
      */
-    private static boolean isBlockPassable(Block block) {
-        Material type = block.getType();
+    private static boolean isBlockPassable(BlockReader blocks, int x, int y, int z, Material type) {
         // Check for bottom slabs (slabs in the lower half of the block space)
-        if (Tag.SLABS.isTagged(type)) {
-            org.bukkit.block.data.type.Slab slabData = (org.bukkit.block.data.type.Slab) block.getBlockData();
-            return slabData.getType() != org.bukkit.block.data.type.Slab.Type.BOTTOM;
+        if (BlockSafety.is(type, BlockSafety.SLAB)) {
+            Slab slabData = (Slab) blocks.getBlockData(x, y, z);
+            return slabData.getType() != Slab.Type.BOTTOM;
         }
-        return block.isPassable();
-    }
-
-    /**
-     * Validates if the shop location is valid and its chunk is loaded.
-     *
-     * @param location The location to validate.
-     * @return True if the location is valid and the chunk is loaded.
-     */
-    private static boolean isValidShopLocation(Location location) {
-        return location != null && location.getWorld() != null &&
-                location.getWorld().isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        return BlockSafety.is(type, BlockSafety.PASSABLE);
     }
 
     /**
@@ -255,4 +151,38 @@ public class LocationUtil {
     public static double calculateDistance3D(double x1, double y1, double z1, double x2, double y2, double z2) {
         return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2) + Math.pow(z2 - z1, 2));
     }
-}
\ No newline at end of file
+
+    /**
+     * Packs block coordinates into a single long, using 26 bits for X and Z and 12 bits for Y.
+     *
+     * @param x Block X-coordinate.
+     * @param y Block Y-coordinate.
+     * @param z Block Z-coordinate.
+     * @return The packed block position.
+     */
+    public static long packBlockPosition(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public static int unpackBlockX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackBlockY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    public static int unpackBlockZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    /**
+     * Reads blocks by world coordinates, from the live world or from chunk snapshots
+     */
+    public interface BlockReader {
+
+        Material getType(int x, int y, int z);
+
+        BlockData getBlockData(int x, int y, int z);
+    }
+}
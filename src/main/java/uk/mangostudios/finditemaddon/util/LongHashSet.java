@@ -0,0 +1,95 @@
+package uk.mangostudios.finditemaddon.util;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A minimal open-addressing hash set of primitive longs, so membership checks don't box.
+ * <p>
+ * Not thread safe - callers that share a set between threads should treat it as
+ * copy-on-write and only publish fully built sets.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private boolean containsEmpty;
+    private int size;
+
+    public LongHashSet() {
+        this.table = new long[16];
+    }
+
+    public LongHashSet(LongHashSet other) {
+        this.table = other.table.clone();
+        this.containsEmpty = other.containsEmpty;
+        this.size = other.size;
+    }
+
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        if ((size + 1) * 2 > table.length) this.resize();
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) return false;
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsEmpty;
+
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (containsEmpty) consumer.accept(EMPTY);
+        for (long value : table) {
+            if (value != EMPTY) consumer.accept(value);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void resize() {
+        long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        int mask = table.length - 1;
+        for (long value : oldTable) {
+            if (value == EMPTY) continue;
+            int index = mix(value) & mask;
+            while (table[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            table[index] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
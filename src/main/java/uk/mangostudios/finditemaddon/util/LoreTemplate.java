@@ -0,0 +1,105 @@
+package uk.mangostudios.finditemaddon.util;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.ComponentLike;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A lore list parsed through MiniMessage once, with its placeholders left as markers
+ * which are filled in per item without parsing the lines again.
+ * <p>
+ * Values containing MiniMessage tags, e.g. formatted warp display names, are parsed on their own and
+ * inserted as components, so they render the same as when they were substituted before parsing.
+ */
+public class LoreTemplate {
+
+    private static final char MARKER = '\uE000';
+    private static final Pattern MARKER_PATTERN = Pattern.compile(MARKER + "([a-z0-9_-]+)" + MARKER);
+
+    private final List<Line> lines;
+
+    private LoreTemplate(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Compiles a list of MiniMessage lines into a template
+     *
+     * @param rawLines     The lines from the config, may be null
+     * @param placeholders The placeholder names (without angle brackets) used by these lines
+     * @return The compiled template
+     */
+    public static LoreTemplate compile(@Nullable List<String> rawLines, String... placeholders) {
+        List<Line> lines = new ArrayList<>();
+        if (rawLines == null) return new LoreTemplate(lines);
+
+        TagResolver.Builder resolver = TagResolver.builder();
+        for (String placeholder : placeholders) {
+            resolver.tag(placeholder, Tag.selfClosingInserting(Component.text(MARKER + placeholder + MARKER)));
+        }
+        TagResolver markers = resolver.build();
+
+        for (String rawLine : rawLines) {
+            if (rawLine == null) continue;
+            Component component = MiniMessage.miniMessage().deserialize(rawLine, markers)
+                    .decoration(TextDecoration.ITALIC, false);
+            boolean hasPlaceholders = false;
+            for (String placeholder : placeholders) {
+                if (rawLine.contains("<" + placeholder + ">") || rawLine.contains("<" + placeholder + "/>")) {
+                    hasPlaceholders = true;
+                    break;
+                }
+            }
+            lines.add(new Line(component, hasPlaceholders));
+        }
+        return new LoreTemplate(lines);
+    }
+
+    /**
+     * Renders the lore, resolving each placeholder that is present on a line
+     *
+     * @param values Maps a placeholder name to the text to insert, which may contain MiniMessage tags
+     * @return The rendered lore
+     */
+    public List<Component> render(Function<String, String> values) {
+        List<Component> rendered = new ArrayList<>(lines.size());
+        TextReplacementConfig replacement = null;
+        for (Line line : lines) {
+            if (!line.hasPlaceholders()) {
+                rendered.add(line.component());
+                continue;
+            }
+            if (replacement == null) {
+                replacement = TextReplacementConfig.builder()
+                        .match(MARKER_PATTERN)
+                        .replacement((result, builder) -> renderValue(values.apply(result.group(1)), builder))
+                        .build();
+            }
+            rendered.add(line.component().replaceText(replacement));
+        }
+        return rendered;
+    }
+
+    /**
+     * Only values that may contain tags are parsed, plain ones (prices, coordinates) are inserted as they are
+     */
+    private static ComponentLike renderValue(String value, TextComponent.Builder builder) {
+        if (value.indexOf('<') < 0) return builder.content(value);
+        return MiniMessage.miniMessage().deserialize(value);
+    }
+
+    private record Line(Component component, boolean hasPlaceholders) {
+    }
+
+}
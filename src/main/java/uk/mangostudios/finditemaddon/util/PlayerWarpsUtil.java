@@ -27,9 +27,6 @@ import org.jetbrains.annotations.Nullable;
 import uk.mangostudios.finditemaddon.FindItemAddOn;
 import uk.mangostudios.finditemaddon.external.PlayerWarpsHandler;
 
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -37,42 +34,7 @@ public class PlayerWarpsUtil {
 
     @Nullable
     public Warp findNearestWarp(Location shopLocation, UUID shopOwner) {
-        List<Warp> playersWarps = PlayerWarpsHandler.getAllWarps().stream()
-                .filter(warp -> warp.getWarpLocation().getWorld() != null)
-                .filter(warp -> warp.getWarpLocation().getWorld().equals(shopLocation.getWorld().getName()))
-                .filter(warp -> warp.getWarpPlayer().getUUID().equals(shopOwner))
-                .toList();
-
-        if (playersWarps.isEmpty()) {
-            return null;
-        }
-
-        Map<Double, Warp> warpDistanceMap = new TreeMap<>();
-        playersWarps.forEach(warp ->
-                warpDistanceMap.put(LocationUtil.calculateDistance3D(
-                        shopLocation.getX(),
-                        shopLocation.getY(),
-                        shopLocation.getZ(),
-                        warp.getWarpLocation().getX(),
-                        warp.getWarpLocation().getY(),
-                        warp.getWarpLocation().getZ()
-                ), warp));
-
-        for (Map.Entry<Double, Warp> doubleWarpEntry : warpDistanceMap.entrySet()) {
-            // Is the distance less than 200 blocks?
-            if (doubleWarpEntry.getKey() > 200) {
-                continue;
-            }
-
-            // Is the warp locked?
-            if (doubleWarpEntry.getValue().isWarpLocked()) {
-                continue;
-            }
-
-            return doubleWarpEntry.getValue();
-        }
-
-        return null;
+        return PlayerWarpsHandler.getWarpIndex().findNearest(shopLocation, shopOwner);
     }
 
     public static boolean isPlayerBanned(Warp warp, Player player) {
@@ -0,0 +1,30 @@
+package uk.mangostudios.finditemaddon.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executor searches, result filtering and GUI rendering run on. Each task gets its own
+ * virtual thread, so blocking lookups (e.g. economy balances) don't hold up other searches.
+ */
+public final class SearchExecutor {
+
+    private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("FindItemAddOn-search-", 0).factory());
+
+    private SearchExecutor() {
+    }
+
+    public static Executor get() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Stops accepting new tasks; tasks already running are left to finish
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+    }
+
+}